@@ -1,5 +1,6 @@
 import sys
 import socket
+import struct
 import datetime
 from PyQt5.QtWidgets import (QApplication, QMainWindow, QPlainTextEdit, 
                              QVBoxLayout, QWidget, QLabel, QHBoxLayout,
@@ -34,12 +35,17 @@ BORDER_COLOR_MAP = {
 
 PORT = 5805
 
+# 二进制帧：magic(1) 类别(1) 序号(4) FPGA时间戳微秒(8) 正文长度(2)，大端序
+FRAME_MAGIC = 0xA5
+FRAME_HEADER = struct.Struct(">BBIQH")
+
 # ---------------------------------------------------------
 # 后台线程：专门负责监听来自 RoboRIO 的 UDP 数据
 # ---------------------------------------------------------
 class UdpListener(QThread):
     # 定义一个信号，当收到消息时发送给主界面
     message_received = pyqtSignal(str)
+    last_seq = None
 
     def run(self):
         # FRC NetConsole 默认端口是 7777
@@ -61,25 +67,55 @@ class UdpListener(QThread):
             try:
                 # 接收数据 (通常 FRC 日志包不会太大，4096 足够)
                 data, address = sock.recvfrom(4096)
-                # 尝试多种编码方案
-                decoded_msg = ""
-                for encoding in ['utf-8', 'gbk', 'gb18030']:
-                    try:
-                        decoded_msg = data.decode(encoding)
-                        break 
-                    except UnicodeDecodeError:
-                        continue
-                
-                if not decoded_msg:
-                    # 如果都失败了，强制转换并替换错误字符
-                    decoded_msg = data.decode('utf-8', errors='replace')
-
-                if decoded_msg.strip():
-                    self.message_received.emit(decoded_msg.strip())
+                if data and data[0] == FRAME_MAGIC:
+                    self.parse_frames(data)
+                else:
+                    # 文本模式：机器人端会把多条消息合并进一个包，消息之间用 \0 分隔
+                    for part in data.split(b'\x00'):
+                        self.emit_text(part)
 
             except Exception as e:
                 print(f"接收错误: {e}")
 
+    def parse_frames(self, data):
+        pos = 0
+        while pos + FRAME_HEADER.size <= len(data):
+            magic, category_id, seq, timestamp_us, length = FRAME_HEADER.unpack_from(data, pos)
+            if magic != FRAME_MAGIC:
+                self.message_received.emit(f"<--2-->[console] 数据包格式错误，丢弃剩余 {len(data) - pos} 字节")
+                return
+            pos += FRAME_HEADER.size
+            payload = data[pos:pos + length]
+            pos += length
+
+            # 通过序号检测 UDP 丢包（机器人端缓冲区满丢弃的不占序号，机器人会另外发警告）
+            if self.last_seq is not None:
+                lost = (seq - self.last_seq - 1) & 0xFFFFFFFF
+                if 0 < lost < 0x80000000:
+                    self.message_received.emit(f"<--2-->[console] 丢失 {lost} 条消息")
+            self.last_seq = seq
+
+            text = payload.decode('utf-8', errors='replace').strip()
+            if text:
+                self.message_received.emit(f"<--{category_id}-->[{timestamp_us / 1e6:.3f}] {text}")
+
+    def emit_text(self, data):
+        # 尝试多种编码方案
+        decoded_msg = ""
+        for encoding in ['utf-8', 'gbk', 'gb18030']:
+            try:
+                decoded_msg = data.decode(encoding)
+                break 
+            except UnicodeDecodeError:
+                continue
+        
+        if not decoded_msg:
+            # 如果都失败了，强制转换并替换错误字符
+            decoded_msg = data.decode('utf-8', errors='replace')
+
+        if decoded_msg.strip():
+            self.message_received.emit(decoded_msg.strip())
+
 # ---------------------------------------------------------
 # 控制台核心部件（只负责显示信息）
 # ---------------------------------------------------------
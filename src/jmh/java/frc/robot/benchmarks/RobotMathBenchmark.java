@@ -0,0 +1,198 @@
+package frc.robot.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Library.team1706.LinearInterpolationTable;
+import frc.robot.Library.team19725.Point3D;
+import frc.robot.Library.team95.BetterSwerveKinematics;
+import frc.robot.subsystems.TurrentSubsystem;
+import frc.robot.subsystems.TurrentSubsystem.TurrentConst;
+import frc.robot.utils.CalculatePassFuelTarget;
+import frc.robot.utils.FindAprilTag;
+import frc.robot.utils.ShotGrid;
+import frc.robot.utils.ShotSolver;
+
+/**
+ * 20ms 循环里的纯数学热点，在电脑 JVM 上先量一遍，回归不用等上了 roboRIO 才发现
+ *
+ * 每个方法的输入从一组预先生成的随机位姿里轮流取，避免 JIT 把常量折叠掉。
+ * gradlew jmh 默认带 GC profiler，看 gc.alloc.rate.norm（每次调用分配的字节数）。
+ *
+ * getPWYShootTargetPosWithShift 是 TurrentSubsystem 的私有方法，依赖底盘，这里分成它的两条路径量：
+ * ShotGrid 查表命中，和没命中时的 ShotSolver 牛顿迭代。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotMathBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final Pose2d[] m_poses = new Pose2d[SAMPLES];
+    private final Point3D[] m_points = new Point3D[SAMPLES];
+    private final ChassisSpeeds[] m_speeds = new ChassisSpeeds[SAMPLES];
+    private final double[] m_distances = new double[SAMPLES];
+    private final double[] m_velocities = new double[SAMPLES * 2];
+    private int m_index = 0;
+
+    private Translation2d m_hub;
+    private ShotSolver m_shotSolver;
+    private ShotGrid m_shotGrid;
+    private BetterSwerveKinematics m_kinematics;
+    private Point2D[] m_tablePoints;
+    private double m_tableMin, m_tableMax;
+    private LinearInterpolationTable m_binarySearchTable;
+    private LinearInterpolationTable m_uniformGridTable;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(5515);
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = 1.0 + random.nextDouble() * 14.5;
+            double y = 0.5 + random.nextDouble() * 7.0;
+            double heading = (random.nextDouble() * 2 - 1) * Math.PI;
+            m_poses[i] = new Pose2d(x, y, new Rotation2d(heading));
+            m_points[i] = new Point3D(x, y, 0);
+            m_speeds[i] = new ChassisSpeeds(random.nextGaussian() * 2, random.nextGaussian() * 2, random.nextGaussian() * 3);
+            m_distances[i] = 1.0 + random.nextDouble() * 4.0;
+            m_velocities[2 * i] = random.nextGaussian() * 1.5;
+            m_velocities[2 * i + 1] = random.nextGaussian() * 1.5;
+        }
+
+        m_hub = ShooterConstants.targetHub;
+        m_shotSolver = new ShotSolver(ShooterConstants.kShotTimeTable);
+        m_shotSolver.setTurretOffset(TurrentConst.turrentOffset.getX(), TurrentConst.turrentOffset.getY());
+        m_shotGrid = ShotGrid.load(Path.of("src/main/deploy", ShotGrid.FILE_NAME),
+            ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable);
+        if (m_shotGrid == null) {
+            // 没有表时 shotGridLookup 量出来的只是一次 null 判断，直接失败，先运行 gradlew generateShotGrid
+            throw new IllegalStateException("ShotGrid 加载失败: src/main/deploy/" + ShotGrid.FILE_NAME);
+        }
+
+        // 同一组射速点，分别用两种查找方式
+        double[] xs = ShooterConstants.kRPMTable.getX();
+        double[] ys = ShooterConstants.kRPMTable.getY();
+        Point2D[] points = new Point2D[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            points[i] = new Point2D.Double(xs[i], ys[i]);
+        }
+        m_tablePoints = points;
+        m_tableMin = xs[0];
+        m_tableMax = xs[xs.length - 1];
+        m_binarySearchTable = new LinearInterpolationTable(LinearInterpolationTable.LookupMode.BINARY_SEARCH, points);
+        m_uniformGridTable = new LinearInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, points);
+
+        double half = 0.3;
+        m_kinematics = new BetterSwerveKinematics(
+            new Translation2d(half, half), new Translation2d(half, -half),
+            new Translation2d(-half, half), new Translation2d(-half, -half));
+    }
+
+    private int next() {
+        m_index = (m_index + 1) & (SAMPLES - 1);
+        return m_index;
+    }
+
+    @Benchmark
+    public double calcTurrentAngle() {
+        return TurrentSubsystem.calcTurrentAngle(m_poses[next()], m_hub);
+    }
+
+    @Benchmark
+    public boolean shotSolverSolve() {
+        int i = next();
+        Pose2d pose = m_poses[i];
+        return m_shotSolver.solve(pose.getX(), pose.getY(), pose.getRotation().getRadians(),
+            m_velocities[2 * i], m_velocities[2 * i + 1], 0, 0, 0, 0, m_hub.getX(), m_hub.getY());
+    }
+
+    /**
+     * 改成二分 / 等宽格子之前的逐点扫描，作为两种查找方式的对照
+     */
+    @Benchmark
+    public double linearTableScan() {
+        double input = m_distances[next()];
+        Point2D[] points = m_tablePoints;
+        int index = 0;
+        if (input <= m_tableMin) {
+            index = 0;
+        } else if (input >= m_tableMax) {
+            index = points.length - 2;
+        } else {
+            for (int i = 1; i < points.length; i++) {
+                if (input > points[i - 1].getX() && input <= points[i].getX()) {
+                    index = i - 1;
+                }
+            }
+        }
+        return LinearInterpolationTable.interpolate(input, points[index], points[index + 1]);
+    }
+
+    /**
+     * 和 getPWYShootTargetPosWithShift 一样：先算炮台位置和出膛速度，再用炮台相对目标的坐标查表
+     */
+    @Benchmark
+    public void shotGridLookup(Blackhole bh) {
+        int i = next();
+        Pose2d pose = m_poses[i];
+        m_shotSolver.updateTurretState(pose.getX(), pose.getY(), pose.getRotation().getRadians(),
+            m_velocities[2 * i], m_velocities[2 * i + 1], 0, 0, 0, 0);
+        bh.consume(m_shotGrid.lookup(m_shotSolver.getTurretX() - m_hub.getX(), m_shotSolver.getTurretY() - m_hub.getY(),
+            m_shotSolver.getTurretVx(), m_shotSolver.getTurretVy()));
+        bh.consume(m_shotGrid.getTimeOfFlight());
+    }
+
+    @Benchmark
+    public double linearTableBinarySearch() {
+        return m_binarySearchTable.getOutput(m_distances[next()]);
+    }
+
+    @Benchmark
+    public double linearTableUniformGrid() {
+        return m_uniformGridTable.getOutput(m_distances[next()]);
+    }
+
+    @Benchmark
+    public double cubicTableTimeOfFlight() {
+        return ShooterConstants.kShotTimeTable.getOutput(m_distances[next()]);
+    }
+
+    @Benchmark
+    public double findAprilTagHeading() {
+        int i = next();
+        return FindAprilTag.getTargetHeading(m_points[i], m_poses[i].getRotation().getRadians(), 0, false);
+    }
+
+    @Benchmark
+    public Point3D calculatePassTarget() {
+        return CalculatePassFuelTarget.calculatePassTarget(m_poses[next()]);
+    }
+
+    @Benchmark
+    public Object swerveModuleStates() {
+        return m_kinematics.toSwerveModuleStates(m_speeds[next()]);
+    }
+}
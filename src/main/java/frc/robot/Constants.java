@@ -20,6 +20,7 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import frc.robot.Library.MUtils.SegmentOnTheField;
 import frc.robot.utils.Models.AprilTagCoordinate;
 import frc.robot.Library.team1706.LinearInterpolationTable;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
 
 import java.awt.geom.Point2D;
 import java.util.Arrays;
@@ -50,6 +51,7 @@ public class Constants {
         public final static double kInnerDeadband = 0.004;
         public final static double kOuterDeadband = 0.98; // these were defined for the 1706 lib;
         public static final int IntakeButton = 0;
+        public static final int kAccelFilterWindow = 5; // 底盘加速度 Savitzky-Golay 窗口点数
     }
 
     public static final class AutoConstants {
@@ -321,8 +323,12 @@ public class Constants {
             new Point2D.Double(100.0, 1.365),
         };
 
-        public static final LinearInterpolationTable kRPMTable = new LinearInterpolationTable(kRPMPoints);
-        public static final LinearInterpolationTable kShotTimeTable = new LinearInterpolationTable(kShotTimePoints);
+        // true 时 TurrentSubsystem 用 BallisticSimulator 生成的 deploy/ballistic_tables.txt 代替下面两张手调的表（没有文件时仍用手调的）
+        public static final boolean kUseBallisticTables = false;
+
+        // 单调三次插值：过所有标定点、没有折角，飞行时间的导数给提前量求解器用；每帧都要查好几次，用 O(1) 的等宽格子查找
+        public static final MonotoneCubicInterpolationTable kRPMTable = new MonotoneCubicInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, kRPMPoints);
+        public static final MonotoneCubicInterpolationTable kShotTimeTable = new MonotoneCubicInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, kShotTimePoints);
         private static final Translation2d blueHub = new Translation2d(4.022+0.55, 4.021328);    // 0.55是hub的半径
         private static final Translation2d redHub = new Translation2d(12.519-0.55, 4.021328);
         public static final Translation2d targetHub = (alliance == Alliance.Blue) ? blueHub : redHub;
@@ -427,8 +433,41 @@ public class Constants {
         public static final double KS = 0.;
         public static final double KV = 0;
         public static final double KA = 0;
+        public static final double KV_AIM_FF = 0.12; // 瞄准移动目标时的速度前馈（伏 / 电机圈每秒），待调
         public static final double speed = 1;
         public static final double minPos = -1;
         public static final double maxPos = 1;
     }
+
+    // 仿真用的机构参数：转动惯量是估的（kg*m^2），只求控制回路在电脑上能跑出差不多的响应，实车标定后再改
+    public static final class SimConstants {
+        public static final double kTurretMOI = 0.05;
+        public static final double kShooterMOI = 0.004;
+        public static final double kShooterGearing = 1.0;
+        public static final double kFeedMOI = 0.0005;
+        public static final double kFeedGearing = 1.0;
+        public static final double kPathMOI = 0.002;
+        public static final double kPathGearing = 1.0;
+        public static final double kExtenderMOI = 0.02;
+        // 伸缩臂两端撞到推不动的位置（转子圈数，上电时在最里面，见 IntakeConstants.IN_POS / OUT_POS）
+        public static final double kExtenderMinRotorPos = 0.0;
+        public static final double kExtenderMaxRotorPos = 5.5;
+    }
+
+    // 多相机视觉融合，见 LimelightModule.fuse
+    public static final class VisionConstants {
+        public static final boolean kUseFusion = true;      // false 时回到原来只取一个最好的
+        public static final boolean kUseFrameQueue = true;  // true: NT 队列逐帧收（VisionFrameQueue），false: 每拍轮询
+        public static final double kPosStdDevScale = 0.1;   // 位置标准差 = scale * 距离^2，融合和单帧两条路径共用
+        // 每个相机自己的标准差倍数，顺序和 LimelightModule.limelightNames 一样（front, right, left），标定后再改
+        public static final double[] kCameraStdDevScale = { 1.0, 1.0, 1.0 };
+        public static final double kAmbiguityWeight = 4.0;  // 单标签时标准差 * (1 + weight * ambiguity)
+        public static final double kMaxAmbiguity = 0.7;     // 单标签 ambiguity 超过这个直接丢
+        public static final double kLatencyStdDevPerMps = 0.5; // 延时期间底盘走过的距离 * 这个系数，加到位置标准差上
+        // 离群值剔除，见 LimelightModule.passesGate
+        public static final boolean kUseOutlierRejection = true;
+        public static final double kOdometryStdDev = 0.15;   // 估计位姿自己的位置标准差（米），待比赛数据调
+        public static final double kChiSquaredGate = 9.21;   // 2 自由度卡方 99% 分位
+        public static final int kMaxConsecutiveRejects = 25; // 同一相机连续拒这么多帧后放行一帧
+    }
 }
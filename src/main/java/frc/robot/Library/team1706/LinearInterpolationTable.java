@@ -1,66 +1,165 @@
 package frc.robot.Library.team1706;
 
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 
-/* This should be updated to use binary search at some point */
+/*
+ * 分段线性插值表，超出范围时用第一段 / 最后一段外推。
+ * 点按 x 排序后存在两个 double[] 里，查找有两种方式：
+ * - BINARY_SEARCH：二分查找，O(log n)
+ * - UNIFORM_GRID：预先把 [最小x, 最大x] 分成宽度不超过最短一段的等宽格子，每格记下起始段号，
+ *   查找时直接算格子号，最多再往后挪一段，O(1)
+ * 两种方式结果和原来的逐点扫描完全一样，查找过程中不分配内存。
+ */
 
 public class LinearInterpolationTable {
+    public enum LookupMode {
+        BINARY_SEARCH,
+        UNIFORM_GRID,
+    }
+
+    private static final int MAX_GRID_CELLS = 4096;
+
     private double m_maxInput = Double.NEGATIVE_INFINITY;
     private double m_minInput = Double.POSITIVE_INFINITY;
     private final Point2D[] m_points;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_slope;  // 第 i 段的斜率，预先算好省掉每次查表的除法
+    private final LookupMode m_mode;
     public final int size;
 
+    // UNIFORM_GRID 用
+    private int[] m_gridSegment;
+    private double m_gridInvWidth;
+
     public LinearInterpolationTable(Point2D... points) {
+        this(LookupMode.BINARY_SEARCH, points);
+    }
+
+    public LinearInterpolationTable(LookupMode mode, Point2D... points) {
         m_points = points;
         size = m_points.length;
+
+        Point2D[] sorted = points.clone();
+        Arrays.sort(sorted, (a, b) -> Double.compare(a.getX(), b.getX()));
+        m_x = new double[size];
+        m_y = new double[size];
         for (int i = 0; i < size; i++) {
-            if (m_points[i].getX() > m_maxInput) {
-                m_maxInput = m_points[i].getX();
+            m_x[i] = sorted[i].getX();
+            m_y[i] = sorted[i].getY();
+            if (m_x[i] > m_maxInput) {
+                m_maxInput = m_x[i];
             }
-            if (m_points[i].getX() < m_minInput) {
-                m_minInput = m_points[i].getX();
+            if (m_x[i] < m_minInput) {
+                m_minInput = m_x[i];
             }
         }
 
+        m_slope = new double[Math.max(size - 1, 0)];
+        for (int i = 0; i + 1 < size; i++) {
+            m_slope[i] = (m_y[i + 1] - m_y[i]) / (m_x[i + 1] - m_x[i]);
+        }
+
+        m_mode = (mode == LookupMode.UNIFORM_GRID && buildGrid()) ? LookupMode.UNIFORM_GRID : LookupMode.BINARY_SEARCH;
+    }
+
+    public LookupMode getLookupMode() {
+        return m_mode;
     }
 
     public double getOutput(double input) {
-        int index = 0;
+        int index = findSegment(input);
+        return m_y[index] + (input - m_x[index]) * m_slope[index];
+    }
+
+    /**
+     * @return input 所在段的起点下标 i（满足 x[i] < input <= x[i+1]，超出范围时为第一段或最后一段）
+     */
+    protected int findSegment(double input) {
         if (input <= m_minInput) {
-            index = 0;
+            return 0;
         } else if (input >= m_maxInput) {
-            index = size - 2;
-        } else {
-            for (int i = 1; i < m_points.length; i++) {
-                if (input > m_points[i - 1].getX() && input <= m_points[i].getX()) {
-                    index = i - 1;
-                }
+            return size - 2;
+        }
+
+        if (m_mode == LookupMode.UNIFORM_GRID) {
+            int cell = (int) ((input - m_minInput) * m_gridInvWidth);
+            if (cell >= m_gridSegment.length) {
+                cell = m_gridSegment.length - 1;
+            }
+            int index = m_gridSegment[cell];
+            // 格子宽度不超过最短的一段，所以最多往后挪一段；往前挪只是防止格子边界上的舍入误差
+            while (index < size - 2 && input > m_x[index + 1]) {
+                index++;
+            }
+            while (index > 0 && input <= m_x[index]) {
+                index--;
             }
+            return index;
         }
-        return interpolate(input, m_points[index], m_points[index + 1]);
+
+        // 找第一个 x[hi] >= input，段就是 hi - 1
+        int lo = 1;
+        int hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_x[mid] < input) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * @return 是否建成（点太少、有重复 x 或者格子太多时退回二分查找）
+     */
+    private boolean buildGrid() {
+        if (size < 2) {
+            return false;
+        }
+        double minWidth = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < size; i++) {
+            minWidth = Math.min(minWidth, m_x[i] - m_x[i - 1]);
+        }
+        double range = m_maxInput - m_minInput;
+        if (!(minWidth > 0.0) || range / minWidth > MAX_GRID_CELLS) {
+            return false;
+        }
+
+        int cells = (int) Math.ceil(range / minWidth);
+        m_gridInvWidth = cells / range;
+        m_gridSegment = new int[cells];
+        int index = 0;
+        for (int c = 0; c < cells; c++) {
+            double cellStart = m_minInput + c / m_gridInvWidth;
+            while (index < size - 2 && cellStart >= m_x[index + 1]) {
+                index++;
+            }
+            m_gridSegment[c] = index;
+        }
+        return true;
     }
 
     public static double interpolate(double input, Point2D point1, Point2D point2) {
-        final double slope = (point2.getY() - point1.getY()) / (point2.getX() - point1.getX());
-        final double delta_x = input - point1.getX();
+        return interpolate(input, point1.getX(), point1.getY(), point2.getX(), point2.getY());
+    }
+
+    public static double interpolate(double input, double x1, double y1, double x2, double y2) {
+        final double slope = (y2 - y1) / (x2 - x1);
+        final double delta_x = input - x1;
         final double delta_y = delta_x * slope;
-        return point1.getY() + delta_y;
+        return y1 + delta_y;
     }
 
     public double[] getX() {
-        double[] xVals = new double[size];
-        for (int i = 0; i < size; i++) {
-            xVals[i] = m_points[i].getX();
-        }
-        return xVals;
+        return m_x.clone();
     }
 
     public double[] getY() {
-        double[] yVals = new double[size];
-        for (int i = 0; i < size; i++) {
-            yVals[i] = m_points[i].getY();
-        }
-        return yVals;
+        return m_y.clone();
     }
 
     public Point2D[] getTable() {
@@ -0,0 +1,111 @@
+package frc.robot.Library.team1706;
+
+import java.awt.geom.Point2D;
+
+/*
+ * 单调三次插值表（PCHIP，Fritsch-Carlson），接口和 LinearInterpolationTable 一样。
+ * - 经过所有给定的点，一阶导数连续，相邻两点之间不会超出这两点的值（不会过冲）
+ * - 每段的三次多项式系数在构造时算好，按 [y, d, c2, c3] 平铺在一个 double[] 里，查表不分配内存
+ * - 超出范围时按端点的值和斜率线性外推
+ * - getDerivative() 返回 dy/dx，给迭代求解器用
+ */
+
+public class MonotoneCubicInterpolationTable extends LinearInterpolationTable {
+    private final double[] m_xs;
+    // 第 i 段：y(x) = c[4i] + c[4i+1]*t + c[4i+2]*t^2 + c[4i+3]*t^3，t = x - x[i]
+    private final double[] m_coeffs;
+    private final double m_lastY;
+    private final double m_lastSlope;
+
+    public MonotoneCubicInterpolationTable(Point2D... points) {
+        this(LookupMode.BINARY_SEARCH, points);
+    }
+
+    public MonotoneCubicInterpolationTable(LookupMode mode, Point2D... points) {
+        super(mode, points);
+        m_xs = getX();
+        double[] ys = getY();
+        int n = size;
+
+        double[] h = new double[n - 1];
+        double[] delta = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            h[i] = m_xs[i + 1] - m_xs[i];
+            delta[i] = (ys[i + 1] - ys[i]) / h[i];
+        }
+
+        // 各点的斜率
+        double[] d = new double[n];
+        if (n == 2) {
+            d[0] = delta[0];
+            d[1] = delta[0];
+        } else {
+            for (int i = 1; i < n - 1; i++) {
+                if (delta[i - 1] * delta[i] <= 0.0) {
+                    d[i] = 0.0; // 局部极值或者平台，斜率取0才能保证单调
+                } else {
+                    // 加权调和平均
+                    double w1 = 2 * h[i] + h[i - 1];
+                    double w2 = h[i] + 2 * h[i - 1];
+                    d[i] = (w1 + w2) / (w1 / delta[i - 1] + w2 / delta[i]);
+                }
+            }
+            d[0] = endSlope(h[0], h[1], delta[0], delta[1]);
+            d[n - 1] = endSlope(h[n - 2], h[n - 3], delta[n - 2], delta[n - 3]);
+        }
+
+        m_coeffs = new double[4 * (n - 1)];
+        for (int i = 0; i < n - 1; i++) {
+            m_coeffs[4 * i] = ys[i];
+            m_coeffs[4 * i + 1] = d[i];
+            m_coeffs[4 * i + 2] = (3 * delta[i] - 2 * d[i] - d[i + 1]) / h[i];
+            m_coeffs[4 * i + 3] = (d[i] + d[i + 1] - 2 * delta[i]) / (h[i] * h[i]);
+        }
+        m_lastY = ys[n - 1];
+        m_lastSlope = d[n - 1];
+    }
+
+    /**
+     * 端点斜率：三点公式，再限制一下保证单调
+     */
+    private static double endSlope(double h0, double h1, double delta0, double delta1) {
+        double d = ((2 * h0 + h1) * delta0 - h0 * delta1) / (h0 + h1);
+        if (Math.signum(d) != Math.signum(delta0)) {
+            return 0.0;
+        }
+        if (Math.signum(delta0) != Math.signum(delta1) && Math.abs(d) > Math.abs(3 * delta0)) {
+            return 3 * delta0;
+        }
+        return d;
+    }
+
+    @Override
+    public double getOutput(double input) {
+        if (input <= m_xs[0]) {
+            return m_coeffs[0] + (input - m_xs[0]) * m_coeffs[1];
+        }
+        if (input >= m_xs[size - 1]) {
+            return m_lastY + (input - m_xs[size - 1]) * m_lastSlope;
+        }
+        int i = findSegment(input);
+        int c = 4 * i;
+        double t = input - m_xs[i];
+        return m_coeffs[c] + t * (m_coeffs[c + 1] + t * (m_coeffs[c + 2] + t * m_coeffs[c + 3]));
+    }
+
+    /**
+     * @return 在 input 处的导数 dy/dx
+     */
+    public double getDerivative(double input) {
+        if (input <= m_xs[0]) {
+            return m_coeffs[1];
+        }
+        if (input >= m_xs[size - 1]) {
+            return m_lastSlope;
+        }
+        int i = findSegment(input);
+        int c = 4 * i;
+        double t = input - m_xs[i];
+        return m_coeffs[c + 1] + t * (2 * m_coeffs[c + 2] + t * 3 * m_coeffs[c + 3]);
+    }
+}
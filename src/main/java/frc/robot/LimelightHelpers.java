@@ -3,6 +3,7 @@
 package frc.robot;
 
 import edu.wpi.first.networktables.DoubleArrayEntry;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
@@ -572,6 +573,109 @@ public class LimelightHelpers {
 
     }
 
+    /**
+     * Mutable, reusable counterpart of {@link PoseEstimate}. Parsing into a caller-owned buffer
+     * allocates no Pose2d, RawFiducial or PoseEstimate objects, so it can run every loop for every camera.
+     */
+    public static class PoseEstimateBuffer {
+        public static final int MAX_FIDUCIALS = 32;
+
+        public double x;
+        public double y;
+        public double rotationRadians;
+        public double timestampSeconds;
+        public double latency;
+        public int tagCount;
+        public double tagSpan;
+        public double avgTagDist;
+        public double avgTagArea;
+        public boolean isMegaTag2;
+
+        /** Number of fiducials parsed, 0 if the array length did not match tagCount */
+        public int fiducialCount;
+        public final int[] fiducialIds = new int[MAX_FIDUCIALS];
+        public final double[] fiducialTxnc = new double[MAX_FIDUCIALS];
+        public final double[] fiducialTync = new double[MAX_FIDUCIALS];
+        public final double[] fiducialTa = new double[MAX_FIDUCIALS];
+        public final double[] fiducialDistToCamera = new double[MAX_FIDUCIALS];
+        public final double[] fiducialDistToRobot = new double[MAX_FIDUCIALS];
+        public final double[] fiducialAmbiguity = new double[MAX_FIDUCIALS];
+
+        /**
+         * @return Largest ambiguity among the parsed fiducials, 0 if none
+         */
+        public double getMaxAmbiguity() {
+            double max = 0;
+            for (int i = 0; i < fiducialCount; i++) {
+                max = Math.max(max, fiducialAmbiguity[i]);
+            }
+            return max;
+        }
+
+        /**
+         * Copies every field of another buffer into this one without allocating
+         */
+        public void copyFrom(PoseEstimateBuffer other) {
+            x = other.x;
+            y = other.y;
+            rotationRadians = other.rotationRadians;
+            timestampSeconds = other.timestampSeconds;
+            latency = other.latency;
+            tagCount = other.tagCount;
+            tagSpan = other.tagSpan;
+            avgTagDist = other.avgTagDist;
+            avgTagArea = other.avgTagArea;
+            isMegaTag2 = other.isMegaTag2;
+            fiducialCount = other.fiducialCount;
+            System.arraycopy(other.fiducialIds, 0, fiducialIds, 0, fiducialCount);
+            System.arraycopy(other.fiducialTxnc, 0, fiducialTxnc, 0, fiducialCount);
+            System.arraycopy(other.fiducialTync, 0, fiducialTync, 0, fiducialCount);
+            System.arraycopy(other.fiducialTa, 0, fiducialTa, 0, fiducialCount);
+            System.arraycopy(other.fiducialDistToCamera, 0, fiducialDistToCamera, 0, fiducialCount);
+            System.arraycopy(other.fiducialDistToRobot, 0, fiducialDistToRobot, 0, fiducialCount);
+            System.arraycopy(other.fiducialAmbiguity, 0, fiducialAmbiguity, 0, fiducialCount);
+        }
+
+        /**
+         * @return Whether both buffers hold the same measurement, ignoring the timestamp
+         */
+        public boolean sameMeasurement(PoseEstimateBuffer other) {
+            if (x != other.x || y != other.y || rotationRadians != other.rotationRadians
+                    || latency != other.latency || tagCount != other.tagCount || tagSpan != other.tagSpan
+                    || avgTagDist != other.avgTagDist || avgTagArea != other.avgTagArea
+                    || fiducialCount != other.fiducialCount) {
+                return false;
+            }
+            for (int i = 0; i < fiducialCount; i++) {
+                if (fiducialIds[i] != other.fiducialIds[i] || fiducialTxnc[i] != other.fiducialTxnc[i]
+                        || fiducialTync[i] != other.fiducialTync[i] || fiducialTa[i] != other.fiducialTa[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Allocates a Pose2d; only call it for measurements that are actually used
+         */
+        public Pose2d toPose2d() {
+            return new Pose2d(x, y, new Rotation2d(rotationRadians));
+        }
+
+        /**
+         * Allocates an immutable-style PoseEstimate with the same contents
+         */
+        public PoseEstimate toPoseEstimate() {
+            RawFiducial[] rawFiducials = new RawFiducial[Math.max(tagCount, fiducialCount)];
+            for (int i = 0; i < fiducialCount; i++) {
+                rawFiducials[i] = new RawFiducial(fiducialIds[i], fiducialTxnc[i], fiducialTync[i], fiducialTa[i],
+                    fiducialDistToCamera[i], fiducialDistToRobot[i], fiducialAmbiguity[i]);
+            }
+            return new PoseEstimate(toPose2d(), timestampSeconds, latency, tagCount, tagSpan, avgTagDist,
+                avgTagArea, rawFiducials, isMegaTag2);
+        }
+    }
+
     /**
      * Encapsulates the state of an internal Limelight IMU.
      */
@@ -705,45 +809,111 @@ public class LimelightHelpers {
         DoubleArrayEntry poseEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
         
         TimestampedDoubleArray tsValue = poseEntry.getAtomic();
-        double[] poseArray = tsValue.value;
-        long timestamp = tsValue.timestamp;
-        
-        if (poseArray.length == 0) {
+        return toPoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2);
+    }
+
+    private static boolean getBotPoseEstimate(String limelightName, String entryName, boolean isMegaTag2, PoseEstimateBuffer out) {
+        DoubleArrayEntry poseEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
+        // NT itself still hands back a fresh value array per read
+        TimestampedDoubleArray tsValue = poseEntry.getAtomic();
+        return parsePoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2, out);
+    }
+
+    /**
+     * Parses a botpose array (as published by the Limelight) into a PoseEstimate.
+     *
+     * @param poseArray botpose array value
+     * @param timestamp NetworkTables timestamp of the value, in microseconds
+     * @param isMegaTag2 Whether the array came from a MegaTag2 topic
+     * @return PoseEstimate, or null if the array is empty
+     */
+    public static PoseEstimate toPoseEstimate(double[] poseArray, long timestamp, boolean isMegaTag2) {
+        PoseEstimateBuffer buffer = new PoseEstimateBuffer();
+        if (!parsePoseEstimate(poseArray, timestamp, isMegaTag2, buffer)) {
             // Handle the case where no data is available
             return null; // or some default PoseEstimate
         }
-    
-        var pose = toPose2D(poseArray);
-        double latency = extractArrayEntry(poseArray, 6);
-        int tagCount = (int)extractArrayEntry(poseArray, 7);
-        double tagSpan = extractArrayEntry(poseArray, 8);
-        double tagDist = extractArrayEntry(poseArray, 9);
-        double tagArea = extractArrayEntry(poseArray, 10);
-        
+        return buffer.toPoseEstimate();
+    }
+
+    /**
+     * Parses a botpose array into a caller-owned buffer without allocating.
+     *
+     * @param poseArray botpose array value
+     * @param timestamp NetworkTables timestamp of the value, in microseconds
+     * @param isMegaTag2 Whether the array came from a MegaTag2 topic
+     * @param out Buffer to fill
+     * @return false if the array is empty (out is left unchanged)
+     */
+    public static boolean parsePoseEstimate(double[] poseArray, long timestamp, boolean isMegaTag2, PoseEstimateBuffer out) {
+        if (poseArray == null || poseArray.length == 0) {
+            return false;
+        }
+
+        if (poseArray.length < 6) {
+            out.x = 0;
+            out.y = 0;
+            out.rotationRadians = 0;
+        } else {
+            out.x = poseArray[0];
+            out.y = poseArray[1];
+            out.rotationRadians = Units.degreesToRadians(poseArray[5]);
+        }
+        out.latency = extractArrayEntry(poseArray, 6);
+        out.tagCount = (int)extractArrayEntry(poseArray, 7);
+        out.tagSpan = extractArrayEntry(poseArray, 8);
+        out.avgTagDist = extractArrayEntry(poseArray, 9);
+        out.avgTagArea = extractArrayEntry(poseArray, 10);
+        out.isMegaTag2 = isMegaTag2;
+
         // Convert server timestamp from microseconds to seconds and adjust for latency
-        double adjustedTimestamp = (timestamp / 1000000.0) - (latency / 1000.0);
-    
-        RawFiducial[] rawFiducials = new RawFiducial[tagCount];
+        out.timestampSeconds = (timestamp / 1000000.0) - (out.latency / 1000.0);
+
         int valsPerFiducial = 7;
-        int expectedTotalVals = 11 + valsPerFiducial * tagCount;
-    
-        if (poseArray.length != expectedTotalVals) {
-            // Don't populate fiducials
-        } else {
-            for(int i = 0; i < tagCount; i++) {
+        int expectedTotalVals = 11 + valsPerFiducial * out.tagCount;
+        out.fiducialCount = 0;
+        if (poseArray.length == expectedTotalVals) {
+            int count = Math.min(out.tagCount, PoseEstimateBuffer.MAX_FIDUCIALS);
+            for (int i = 0; i < count; i++) {
                 int baseIndex = 11 + (i * valsPerFiducial);
-                int id = (int)poseArray[baseIndex];
-                double txnc = poseArray[baseIndex + 1];
-                double tync = poseArray[baseIndex + 2];
-                double ta = poseArray[baseIndex + 3];
-                double distToCamera = poseArray[baseIndex + 4];
-                double distToRobot = poseArray[baseIndex + 5];
-                double ambiguity = poseArray[baseIndex + 6];
-                rawFiducials[i] = new RawFiducial(id, txnc, tync, ta, distToCamera, distToRobot, ambiguity);
+                out.fiducialIds[i] = (int)poseArray[baseIndex];
+                out.fiducialTxnc[i] = poseArray[baseIndex + 1];
+                out.fiducialTync[i] = poseArray[baseIndex + 2];
+                out.fiducialTa[i] = poseArray[baseIndex + 3];
+                out.fiducialDistToCamera[i] = poseArray[baseIndex + 4];
+                out.fiducialDistToRobot[i] = poseArray[baseIndex + 5];
+                out.fiducialAmbiguity[i] = poseArray[baseIndex + 6];
             }
+            out.fiducialCount = count;
         }
-    
-        return new PoseEstimate(pose, adjustedTimestamp, latency, tagCount, tagSpan, tagDist, tagArea, rawFiducials, isMegaTag2);
+        return true;
+    }
+
+    /**
+     * Reads every botpose value queued on the subscriber since the last call into caller-owned buffers.
+     * Create the subscriber with PubSubOption.sendAll(true) to see every frame, and PubSubOption.pollStorage
+     * to set how many values NT keeps between reads. If more values are queued than buffers are given,
+     * the newest ones are kept. Empty values are skipped.
+     *
+     * Uses readQueue() rather than readQueueValues(): the capture timestamp is derived from each value's
+     * NT timestamp, which readQueueValues() drops.
+     *
+     * @param subscriber Subscriber on a botpose topic
+     * @param isMegaTag2 Whether the topic is a MegaTag2 topic
+     * @param out Buffers to fill, oldest first
+     * @param offset First buffer to fill
+     * @return Number of buffers filled, starting at offset
+     */
+    public static int readPoseEstimateQueue(DoubleArraySubscriber subscriber, boolean isMegaTag2,
+                                            PoseEstimateBuffer[] out, int offset) {
+        TimestampedDoubleArray[] queue = subscriber.readQueue();
+        int count = 0;
+        for (int i = Math.max(0, queue.length - (out.length - offset)); i < queue.length; i++) {
+            if (parsePoseEstimate(queue[i].value, queue[i].timestamp, isMegaTag2, out[offset + count])) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -1282,6 +1452,24 @@ public class LimelightHelpers {
         return getBotPoseEstimate(limelightName, "botpose_orb_wpiblue", true);
     }
 
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiBlue(String)}.
+     *
+     * @return false if no data is available
+     */
+    public static boolean getBotPoseEstimate_wpiBlue(String limelightName, PoseEstimateBuffer out) {
+        return getBotPoseEstimate(limelightName, "botpose_wpiblue", false, out);
+    }
+
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiBlue_MegaTag2(String)}.
+     *
+     * @return false if no data is available
+     */
+    public static boolean getBotPoseEstimate_wpiBlue_MegaTag2(String limelightName, PoseEstimateBuffer out) {
+        return getBotPoseEstimate(limelightName, "botpose_orb_wpiblue", true, out);
+    }
+
     /**
      * Gets the Pose2d for easy use with Odometry vision pose estimator
      * (addVisionMeasurement)
@@ -7,6 +7,7 @@ package frc.robot;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.utils.LoopProfiler;
 import frc.robot.utils.MessageSender;
 
 public class Robot extends TimedRobot {
@@ -35,8 +36,15 @@ public class Robot extends TimedRobot {
 
     @Override
     public void robotPeriodic() {
+        LoopProfiler.start(LoopProfiler.SCHEDULER);
         CommandScheduler.getInstance().run();
+        LoopProfiler.end(LoopProfiler.SCHEDULER);
+
+        LoopProfiler.start(LoopProfiler.CONTAINER_UPDATE_ALWAYS);
         m_robotContainer.updateAlways();
+        LoopProfiler.end(LoopProfiler.CONTAINER_UPDATE_ALWAYS);
+
+        LoopProfiler.endLoop();
     }
 
     @Override
@@ -66,7 +74,9 @@ public class Robot extends TimedRobot {
 
     @Override
     public void autonomousPeriodic() {
+        LoopProfiler.start(LoopProfiler.CONTAINER_UPDATE);
         m_robotContainer.update();
+        LoopProfiler.end(LoopProfiler.CONTAINER_UPDATE);
     }
 
     @Override
@@ -84,7 +94,9 @@ public class Robot extends TimedRobot {
 
     @Override
     public void teleopPeriodic() {
+        LoopProfiler.start(LoopProfiler.CONTAINER_UPDATE);
         m_robotContainer.update();
+        LoopProfiler.end(LoopProfiler.CONTAINER_UPDATE);
     }
 
     @Override
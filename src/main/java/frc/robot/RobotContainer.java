@@ -70,6 +70,7 @@ public class RobotContainer {
     public static final ImprovedCommandXboxController m_driverController3 = new ImprovedCommandXboxController(2);
 
     Command m_autoPath;
+    private Pose2d m_autoStartPose = Constants.auto_start_pos;
 
     private List<Trigger> pathplannerEvents = new ArrayList<Trigger>();
 
@@ -306,6 +307,16 @@ public class RobotContainer {
         return m_autoPath;
     }
 
+    /**
+     * 换一个 auto（无界面仿真批量跑 auto 时用），起始位姿取 auto 文件里的
+     */
+    public void selectAuto(String autoName) {
+        PathPlannerAuto auto = new PathPlannerAuto(autoName);
+        m_autoPath = auto;
+        Pose2d start = auto.getStartingPose();
+        m_autoStartPose = start != null ? start : Constants.auto_start_pos;
+    }
+
     public void update() {
         updateRumble();
         Global.update();
@@ -339,7 +350,7 @@ public class RobotContainer {
     }
 
     public void autoInit() {
-        drivetrain.resetPose(Constants.auto_start_pos);
+        drivetrain.resetPose(m_autoStartPose);
         LimelightModule.resetIsSeen();
         LimelightModule.setSmartMode(false);
         // LimelightHelpers.setPipelineIndex(Constants.LIME_LIGHT_ARPIL_TAG_NAME_LEFT, 0);
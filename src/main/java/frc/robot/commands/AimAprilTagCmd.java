@@ -44,7 +44,7 @@ public class AimAprilTagCmd extends Command {
         Point3D robotPos = new Point3D(pose.getX(), pose.getY(),Constants.AimAprilTagCmdConstants.LimeLightHeight);
 
         // 计算炮台在场地坐标系下的目标位姿
-        Pose2d TurrentPose = m_turret.getTurretWorldPose(pose);
+        Pose2d TurrentPose = TurrentSubsystem.getTurretWorldPose(pose);
         // 提取炮台朝向角度（弧度）
         m_desiredTurretAngle = TurrentPose.getRotation().getRadians();
 
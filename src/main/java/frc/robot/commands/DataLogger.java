@@ -3,16 +3,11 @@ package frc.robot.commands;
 // this file is used for a long-time project in 5515, which will not be used in competitio
 // thus, it will not affect any functionality of the robot and will not be triggered unless stated explicitly
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.ctre.phoenix6.BaseStatusSignal;
-import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.TalonFX;
 
-import edu.wpi.first.units.measure.AngularVelocity;
-import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.utils.SampleBuffer;
+import frc.robot.utils.SignalCapture;
 
 /**
  * 为PIDSVA整定记录电机实时速度
@@ -20,67 +15,34 @@ import edu.wpi.first.wpilibj2.command.Command;
  * 使用方法：
  * - 调用 startRecording() 开始记录
  * - 调用 stopRecording() 停止记录并获取速度数组
+ * - 记录过程中可以用 getSnapshot() 读取已经记下的数据（不复制）
+ * - 需要更多信号时，在开始记录前通过 getCapture() 添加，停止后可以用 getCapture().writeColumnar() 存文件
+ *
+ * 采集由 SignalCapture 完成：预分配的 double 块，记录 StatusSignal 自带的时间戳，长时间记录也不会产生垃圾
  */
 public class DataLogger extends Command {    
     private static final int[] DEVICE_IDS = {1, 3, 5, 7};
     private static final double UPDATE_FREQUENCY = 100.0;
-    private static final double SAMPLE_PERIOD_MS = 10.0;
     
     private final TalonFX[] motors;
-    private final StatusSignal<AngularVelocity>[] velocitySignals;
-    
-    private volatile boolean isRecording = false;
-    
-    private final List<Double>[] velocityData; // 每个电机的速度列表
-    private final Notifier notifier; // Notifier定时器用于多线程
+    private final SignalCapture capture; // 前 DEVICE_IDS.length 个信号是各电机的速度
 
 
-    @SuppressWarnings("unchecked")
     public DataLogger() {
         int motorCount = DEVICE_IDS.length;
         
         motors = new TalonFX[motorCount];
-        velocitySignals = new StatusSignal[motorCount];
-        velocityData = new ArrayList[motorCount];
+        capture = new SignalCapture("DataLogger");
         
         for (int i = 0; i < motorCount; i++) {
             motors[i] = new TalonFX(DEVICE_IDS[i]);
-            velocitySignals[i] = motors[i].getVelocity();
-            velocityData[i] = new ArrayList<>();
-            
-            // 设置信号更新频率为100Hz
-            velocitySignals[i].setUpdateFrequency(UPDATE_FREQUENCY);
+            capture.addSignal("motor" + DEVICE_IDS[i] + "/velocity", motors[i].getVelocity());
         }
-        
-        notifier = new Notifier(this::recordSample);
     }
     
     public void startRecording() {
-        if (isRecording) {
-            return;
-        }
-        
-        for (List<Double> data : velocityData) {
-            data.clear();
-        }
-        
-        isRecording = true;
-        
-        notifier.startPeriodic(SAMPLE_PERIOD_MS / 1000.0);
-    }
-    
-    private void recordSample() {
-        if (!isRecording) {
-            return;
-        }
-        
-        BaseStatusSignal.refreshAll(velocitySignals);
-        
-        // 记录四个电机的速度值 (单位为 rotations per second)
-        for (int i = 0; i < velocitySignals.length; i++) {
-            double velocity = velocitySignals[i].getValueAsDouble();
-            velocityData[i].add(velocity);
-        }
+        // 信号更新频率和采样频率都是100Hz
+        capture.start(UPDATE_FREQUENCY);
     }
     
     /**
@@ -90,23 +52,32 @@ public class DataLogger extends Command {
      *         单位为 rotations per second
      */
     public double[][] stopRecording() {
-        isRecording = false;
+        capture.stop();
         
-        // 停止Notifier
-        notifier.stop();
-        
-        // 将List转换为数组
-        double[][] result = new double[velocityData.length][];
-        for (int i = 0; i < velocityData.length; i++) {
-            List<Double> data = velocityData[i];
-            result[i] = new double[data.size()];
-            for (int j = 0; j < data.size(); j++) {
-                result[i][j] = data.get(j);
-            }
+        double[][] result = new double[motors.length][];
+        for (int i = 0; i < motors.length; i++) {
+            result[i] = capture.getSnapshot(i).copyValues();
         }
         
         return result;
     }
+
+    /**
+     * 获取某个电机已经记录的数据（时间戳 + 速度），不复制，记录过程中也可以调用
+     * 
+     * @param motorIndex 电机索引(0-3对应deviceId 1,3,5,7)
+     * @return 调用时刻的只读视图
+     */
+    public SampleBuffer.Snapshot getSnapshot(int motorIndex) {
+        return capture.getSnapshot(motorIndex);
+    }
+
+    /**
+     * @return 底层的采集器，可以在开始记录前添加别的信号
+     */
+    public SignalCapture getCapture() {
+        return capture;
+    }
     
     /**
      * 检查是否正在记录
@@ -114,7 +85,7 @@ public class DataLogger extends Command {
      * @return true if recording, false otherwise
      */
     public boolean isRecording() {
-        return isRecording;
+        return capture.isCapturing();
     }
     
     /**
@@ -123,10 +94,7 @@ public class DataLogger extends Command {
      * @return 每个电机的数据点数
      */
     public int getSampleCount() {
-        if (velocityData.length > 0) {
-            return velocityData[0].size();
-        }
-        return 0;
+        return capture.getRowCount();
     }
     
     /**
@@ -2,6 +2,7 @@ package frc.robot.subsystems;
 
 import static edu.wpi.first.units.Units.*;
 
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.littletonrobotics.junction.Logger;
@@ -9,6 +10,7 @@ import org.littletonrobotics.junction.Logger;
 import com.ctre.phoenix6.SignalLogger;
 import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.swerve.SwerveDrivetrainConstants;
+import com.ctre.phoenix6.swerve.SwerveDrivetrain.SwerveDriveState;
 import com.ctre.phoenix6.swerve.SwerveModuleConstants;
 import com.ctre.phoenix6.swerve.SwerveRequest;
 import com.ctre.phoenix6.swerve.SwerveModule.DriveRequestType;
@@ -40,15 +42,14 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import frc.robot.generated.TunerConstants;
 import frc.robot.generated.TunerConstants.TunerSwerveDrivetrain;
+import frc.robot.utils.KinematicStateEstimator;
+import frc.robot.utils.LoopProfiler;
 import frc.robot.utils.MessageSender;
 import frc.robot.LimelightHelpers;
 import frc.robot.Robot;
 import frc.robot.Constants;
 import frc.robot.Library.ImprovedCommandXboxController;
 import frc.robot.Library.team1706.MathUtils;
-import frc.robot.Library.team1706.FieldRelativeAccel;
-import frc.robot.Library.team1706.FieldRelativeSpeed;
-import frc.robot.Library.team1706.FieldRelativeSpeed;
 import edu.wpi.first.math.MathUtil;
 
 /**
@@ -86,9 +87,9 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
     private static double manual_MaxSpeed = TunerConstants.kSpeedAt12Volts.in(MetersPerSecond); // kSpeedAt12Volts desired top speed
     private static double manual_MaxAngularRate = RotationsPerSecond.of(1.).in(RadiansPerSecond); // 3/4 of a rotation per second max angular velocity
     private static final SwerveRequest.FieldCentric m_manualDrive = new SwerveRequest.FieldCentric().withDeadband(0.15).withRotationalDeadband(0.05 * manual_MaxAngularRate).withDriveRequestType(DriveRequestType.Velocity);
-    private FieldRelativeSpeed m_fieldRelVel = new FieldRelativeSpeed();
-    private FieldRelativeSpeed m_lastFieldRelVel = new FieldRelativeSpeed();
-    private FieldRelativeAccel m_fieldRelAccel = new FieldRelativeAccel();
+    private final KinematicStateEstimator m_kinematicState = new KinematicStateEstimator();   // 在里程计线程上更新
+    private final KinematicStateEstimator.Snapshot m_kinematicSnapshot = new KinematicStateEstimator.Snapshot(); // 主线程用的拷贝
+    private volatile Consumer<SwerveDriveState> m_userTelemetry = null;
 
     // 是否正在使用自动瞄准,对准AprilTag
     private boolean usingAutoAim = false;
@@ -178,6 +179,7 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
         }
         configureAutoBuilder();
         configureMoveToPose();
+        configureKinematicState();
 
     }
 
@@ -205,6 +207,7 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
         }
         configureAutoBuilder();
         configureMoveToPose();
+        configureKinematicState();
     }
 
     /**
@@ -240,10 +243,33 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
 
         configureAutoBuilder();
         configureMoveToPose();
+        configureKinematicState();
     }
 
 
     
+    /**
+     * 在里程计线程（CAN FD 下 250Hz）上算场地坐标系速度和加速度。
+     * Phoenix 只允许注册一个 telemetry 回调，所以这里先注册自己的，外面 registerTelemetry 传进来的在后面接着调用。
+     */
+    private void configureKinematicState() {
+        m_kinematicState.configureSavitzkyGolay(Constants.DriveConstants.kAccelFilterWindow);
+        super.registerTelemetry(this::onOdometryUpdate);
+    }
+
+    private void onOdometryUpdate(SwerveDriveState state) {
+        m_kinematicState.update(state.Timestamp, state.Speeds, state.Pose.getRotation());
+        Consumer<SwerveDriveState> telemetry = m_userTelemetry;
+        if (telemetry != null) {
+            telemetry.accept(state);
+        }
+    }
+
+    @Override
+    public void registerTelemetry(Consumer<SwerveDriveState> telemetryFunction) {
+        m_userTelemetry = telemetryFunction;
+    }
+
     private void configureAutoBuilder(){
         try {
             var config = RobotConfig.fromGUISettings();
@@ -328,9 +354,8 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
 
     @Override
     public void periodic() {
-        m_fieldRelVel = new FieldRelativeSpeed(getSpeeds(), getState().Pose.getRotation());
-        m_fieldRelAccel = new FieldRelativeAccel(m_fieldRelVel, m_lastFieldRelVel, 0.02);
-        m_lastFieldRelVel = m_fieldRelVel;
+        LoopProfiler.start(LoopProfiler.DRIVETRAIN);
+        m_kinematicState.read(m_kinematicSnapshot);
         /*
          * Periodically try to apply the operator perspective.
          * If we haven't applied the operator perspective before, then we should apply it regardless of DS state.
@@ -349,9 +374,12 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
             });
         }
 
+        LoopProfiler.start(LoopProfiler.LIMELIGHT);
         LimelightModule.update(this);
+        LoopProfiler.end(LoopProfiler.LIMELIGHT);
 
         Logger.recordOutput("Robot Pose", getPose());
+        LoopProfiler.end(LoopProfiler.DRIVETRAIN);
     }
 
     private void startSimThread() {
@@ -398,11 +426,18 @@ public class CommandSwerveDrivetrain extends TunerSwerveDrivetrain implements Su
         driveSpeedScale = 1;
     }
 
-    public FieldRelativeSpeed getFieldRelativeSpeed() {
-        return this.m_fieldRelVel;
+    /**
+     * 场地坐标系下的速度和加速度（只读），每帧 periodic 开始时从里程计线程取一次。只在主线程上用。
+     */
+    public KinematicStateEstimator.View getKinematicState() {
+        return this.m_kinematicSnapshot;
     }
-    public FieldRelativeAccel getFieldRelativeAccel() {
-        return this.m_fieldRelAccel;
+
+    /**
+     * 在任意线程上读取最新的场地坐标系速度和加速度（里程计频率更新）
+     */
+    public KinematicStateEstimator.Snapshot readKinematicState(KinematicStateEstimator.Snapshot out) {
+        return this.m_kinematicState.read(out);
     }
     public void driveFieldCentric(ImprovedCommandXboxController controller){
         SmartDashboard.putBoolean("usingAuto", usingAutoAim);
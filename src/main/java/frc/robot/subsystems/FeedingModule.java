@@ -5,6 +5,7 @@
 package frc.robot.subsystems;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.PositionVoltage;
 import com.ctre.phoenix6.controls.VelocityVoltage;
@@ -12,7 +13,12 @@ import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.sim.ChassisReference;
+
+import edu.wpi.first.math.system.plant.DCMotor;
 import frc.robot.Constants;
+import frc.robot.Constants.SimConstants;
+import frc.robot.utils.MechanismSim;
 
 public class FeedingModule {
 
@@ -29,6 +35,12 @@ public class FeedingModule {
 
     public FeedingModule() {
         init();
+        if (Utils.isSimulation()) {
+            MechanismSim.add(MechanismSim.dcMotor("Feed", m_feedMotor, ChassisReference.CounterClockwise_Positive,
+                DCMotor.getKrakenX60(1), SimConstants.kFeedMOI, SimConstants.kFeedGearing));
+            MechanismSim.add(MechanismSim.dcMotor("Path", m_pathMotor, ChassisReference.CounterClockwise_Positive,
+                DCMotor.getKrakenX60(1), SimConstants.kPathMOI, SimConstants.kPathGearing));
+        }
     }
 
     private TalonFXConfiguration getFeedMotorConfiguration() {
@@ -9,18 +9,24 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 
 import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.MotorOutputConfigs;
 import com.ctre.phoenix6.configs.Slot0Configs;
+import com.ctre.phoenix6.sim.ChassisReference;
 
 import edu.wpi.first.math.filter.Debouncer;
 import edu.wpi.first.math.filter.Debouncer.DebounceType;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 import frc.robot.Constants.IntakeConstants;
+import frc.robot.Constants.SimConstants;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.MechanismSim;
 import frc.robot.utils.MessageSender;
 import frc.robot.utils.MiscUtils;
 import frc.robot.utils.SmartDashboardEx;
@@ -136,16 +142,23 @@ public class IntakeSubsystem extends SubsystemBase {
         ExtenderMotor.getConfigurator().apply(ExtenderConfig);
         IntakeMotor.getConfigurator().apply(IntakeConfig);
         ExtenderMotor.setPosition(0);
+        if (Utils.isSimulation()) {
+            MechanismSim.add(MechanismSim.dcMotor("Extender", ExtenderMotor, ChassisReference.Clockwise_Positive,
+                    DCMotor.getKrakenX60(1), SimConstants.kExtenderMOI, IntakeConstants.GEAR_RATIO)
+                .withHardStops(SimConstants.kExtenderMinRotorPos, SimConstants.kExtenderMaxRotorPos));
+        }
     }
 
     @Override
     public void periodic(){
+        LoopProfiler.start(LoopProfiler.INTAKE);
         update();
         if (haveObstacle()
             || ExtenderMotor.getPosition().getValueAsDouble() < -1 
             || ExtenderMotor.getPosition().getValueAsDouble() > 7) {
             ExtenderMotor.stopMotor();
         }
+        LoopProfiler.end(LoopProfiler.INTAKE);
     }
 
     public void setExtenderVoltage(double voltage) {
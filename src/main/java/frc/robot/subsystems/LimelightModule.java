@@ -7,14 +7,20 @@ import com.ctre.phoenix6.Utils;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.Pair;
 import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.Constants;
+import frc.robot.Constants.VisionConstants;
 import frc.robot.LimelightHelpers;
+import frc.robot.LimelightHelpers.PoseEstimateBuffer;
 import frc.robot.utils.Global;
+import frc.robot.utils.VisionFrameQueue;
+import frc.robot.utils.VisionOutlierGate;
 
 public class LimelightModule {
     private static final String[] limelightNames = new String[] {
@@ -27,6 +33,40 @@ public class LimelightModule {
                                                       // limelight
 
     private static boolean m_isSmartMode = true;
+
+    // 这一拍所有合格的估计和对应的相机下标。队列模式下一个相机一拍可能来不止一帧
+    // 缓冲区预先分配好反复用，每拍每个相机不再 new PoseEstimate / Pose2d / RawFiducial[]
+    // 新的一帧读进 m_frames[m_frameCount]，合格才 m_frameCount++，不合格下一帧直接覆盖。
+    // 比 MAX_FRAMES_PER_LOOP 多一个缓冲区，满了以后新的一帧照样有地方读；合格的话丢掉最老的一帧，保留最新的
+    private static final int MAX_FRAMES_PER_LOOP = 16;
+    private static final PoseEstimateBuffer[] m_frames = new PoseEstimateBuffer[MAX_FRAMES_PER_LOOP + 1];
+    private static final int[] m_frameCameras = new int[MAX_FRAMES_PER_LOOP + 1];
+    private static int m_frameCount = 0;
+    private static int m_evictedFrames = 0;
+    private static final PoseEstimateBuffer m_mt1Buffer = new PoseEstimateBuffer();
+    private static final Matrix<N3, N1> m_stdDevs = VecBuilder.fill(0, 0, 0);
+
+    // 离群值剔除：每个相机的统计，和连续被拒的次数
+    private static final VisionOutlierGate m_gate = new VisionOutlierGate(limelightNames.length,
+            VisionConstants.kOdometryStdDev, VisionConstants.kChiSquaredGate, VisionConstants.kMaxConsecutiveRejects);
+    private static final String[] m_acceptedKeys = new String[limelightNames.length];
+    private static final String[] m_rejectedKeys = new String[limelightNames.length];
+    private static final String[] m_mahalanobisKeys = new String[limelightNames.length];
+
+    static {
+        for (int i = 0; i < m_frames.length; i++) {
+            m_frames[i] = new PoseEstimateBuffer();
+        }
+        for (int i = 0; i < limelightNames.length; i++) {
+            m_acceptedKeys[i] = "Vision/" + limelightNames[i] + "/Accepted";
+            m_rejectedKeys[i] = "Vision/" + limelightNames[i] + "/Rejected";
+            m_mahalanobisKeys[i] = "Vision/" + limelightNames[i] + "/Mahalanobis";
+        }
+    }
+
+    // NT 队列逐帧收（VisionConstants.kUseFrameQueue），第一次 update 时订阅
+    private static final VisionFrameQueue m_frameQueue = new VisionFrameQueue(limelightNames, "botpose_orb_wpiblue", true);
+    private static boolean m_useQueue = false;
     public static long LastSeenAPTime = System.currentTimeMillis();
 
     public static void setSmartMode(boolean isOn) {
@@ -39,12 +79,19 @@ public class LimelightModule {
         m_isSeen = false;
     }
     public static void update(CommandSwerveDrivetrain swerve) {
+        if (VisionConstants.kUseFrameQueue && !m_useQueue) {
+            m_frameQueue.start();
+            m_useQueue = true;
+        }
         ChassisSpeeds chassisSpeeds = swerve.getSpeeds();
 
         //TODOS 考虑这里速度限制
         if (Math.abs(chassisSpeeds.omegaRadiansPerSecond) > 4 * Math.PI
                 || Math.hypot(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond) > 2) {
-            // 旋转速度过快或者移动速度过快都忽略
+            // 旋转速度过快或者移动速度过快都忽略，这期间收到的帧也不要了
+            if (m_useQueue) {
+                m_frameQueue.clear();
+            }
             return; 
         }
 
@@ -55,68 +102,199 @@ public class LimelightModule {
         double pitch = pigeon.getPitch().getValueAsDouble() % 360; // 或者是 getRoll()，取决于安装方向
         double roll = pigeon.getRoll().getValueAsDouble() % 360;
 
-        LimelightHelpers.PoseEstimate bestMt2 = null;
-        for (int i = 0; i < limelightNames.length; ++i) {
-            String llName = limelightNames[i];
-            LimelightHelpers.SetRobotOrientation(llName, yaw - zeroOdoDegree, 0, pitch, 0, roll, 0);
-            LimelightHelpers.PoseEstimate mt2 = LimelightHelpers.getBotPoseEstimate_wpiBlue_MegaTag2(llName);
-            if (mt2 == null) {
-                continue;
+        // 三个相机的朝向都写完再 flush 一次，不用每个相机 flush 一次
+        for (String llName : limelightNames) {
+            LimelightHelpers.SetRobotOrientation_NoFlush(llName, yaw - zeroOdoDegree, 0, pitch, 0, roll, 0);
+        }
+        LimelightHelpers.Flush();
+
+        double speed = Math.hypot(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond);
+        boolean fuse = m_isSmartMode && VisionConstants.kUseFusion;
+        m_frameCount = 0;
+
+        if (m_useQueue) {
+            while (m_frameQueue.poll(nextSlot())) {
+                acceptEstimate(swerve, m_frameQueue.getLastCamera());
             }
-            if (mt2.tagCount > 0
-                    && mt2.avgTagDist < 4
-                    && mt2.latency < MAX_LL_LATENCY // 抛弃高延时
-            ) {
-                LastSeenAPTime = System.currentTimeMillis();
-                if (m_isSmartMode) {
-                    if (bestMt2 == null) {
-                        bestMt2 = mt2;
-                    } else {
-                        if (mt2.tagCount > bestMt2.tagCount) {
-                            bestMt2 = mt2;
-                        } else if (mt2.tagCount == bestMt2.tagCount && mt2.avgTagDist < bestMt2.avgTagDist) {
-                            bestMt2 = mt2;
-                        }
-                    }
-                } else {
-                    updateOdometry(swerve, mt2);
+            SmartDashboard.putNumber("Vision/DuplicateFrames", m_frameQueue.getDuplicateCount());
+            SmartDashboard.putNumber("Vision/QueueOverflows", m_frameQueue.getOverflowCount());
+            SmartDashboard.putNumber("Vision/EvictedFrames", m_evictedFrames);
+        } else {
+            for (int i = 0; i < limelightNames.length; ++i) {
+                if (LimelightHelpers.getBotPoseEstimate_wpiBlue_MegaTag2(limelightNames[i], nextSlot())) {
+                    acceptEstimate(swerve, i);
                 }
             }
         }
 
-        if (m_isSmartMode && bestMt2 != null) {
-            updateOdometry(swerve, bestMt2);
+        if (fuse) {
+            fuseFrames(swerve, speed);
+        } else if (m_isSmartMode && m_frameCount > 0) {
+            int best = 0;
+            for (int i = 1; i < m_frameCount; i++) {
+                PoseEstimateBuffer mt2 = m_frames[i];
+                PoseEstimateBuffer bestMt2 = m_frames[best];
+                if (mt2.tagCount > bestMt2.tagCount) {
+                    best = i;
+                } else if (mt2.tagCount == bestMt2.tagCount && mt2.avgTagDist < bestMt2.avgTagDist) {
+                    best = i;
+                }
+            }
+            updateOdometry(swerve, m_frames[best], m_frameCameras[best]);
+        }
+        publishGateStats();
+    }
+
+    private static PoseEstimateBuffer nextSlot() {
+        return m_frames[m_frameCount];
+    }
+
+    /**
+     * 检查刚读进 nextSlot() 的一帧。非 smart 模式直接用，smart 模式留在 m_frames 里等这一拍读完
+     */
+    private static void acceptEstimate(CommandSwerveDrivetrain swerve, int camera) {
+        PoseEstimateBuffer mt2 = nextSlot();
+        if (mt2.tagCount > 0
+                && mt2.avgTagDist < 4
+                && mt2.latency < MAX_LL_LATENCY // 抛弃高延时
+        ) {
+            if (!m_isSmartMode) {
+                updateOdometry(swerve, mt2, camera);
+                return;
+            }
+            m_frameCameras[m_frameCount] = camera;
+            if (m_frameCount < MAX_FRAMES_PER_LOOP) {
+                m_frameCount++;
+                return;
+            }
+            // 满了：队列按拍照时间出帧，m_frames[0] 最老。整体左移一格，最老的缓冲区换到末尾给下一帧读
+            PoseEstimateBuffer oldest = m_frames[0];
+            System.arraycopy(m_frames, 1, m_frames, 0, MAX_FRAMES_PER_LOOP);
+            System.arraycopy(m_frameCameras, 1, m_frameCameras, 0, MAX_FRAMES_PER_LOOP);
+            m_frames[MAX_FRAMES_PER_LOOP] = oldest;
+            m_evictedFrames++;
+        }
+    }
+
+    /**
+     * 多相机融合：这一帧所有合格的估计都喂给位姿估计器，而不是只取一个最好的
+     * 按拍摄时间从早到晚喂（估计器按时间戳回放，乱序会让晚到的旧测量覆盖新的），
+     * 每个估计的标准差按 标签数、距离、单标签的 ambiguity、延时、相机 单独算，由卡尔曼增益决定各自的权重
+     */
+    private static void fuseFrames(CommandSwerveDrivetrain swerve, double speed) {
+        // 帧数很少，插入排序
+        for (int i = 1; i < m_frameCount; i++) {
+            PoseEstimateBuffer frame = m_frames[i];
+            int camera = m_frameCameras[i];
+            int j = i - 1;
+            while (j >= 0 && m_frames[j].timestampSeconds > frame.timestampSeconds) {
+                m_frames[j + 1] = m_frames[j];
+                m_frameCameras[j + 1] = m_frameCameras[j];
+                j--;
+            }
+            m_frames[j + 1] = frame;
+            m_frameCameras[j + 1] = camera;
+        }
+
+        int used = 0;
+        for (int i = 0; i < m_frameCount; i++) {
+            PoseEstimateBuffer mt2 = m_frames[i];
+            double xyStdDev = getFusionStdDev(mt2, m_frameCameras[i], speed);
+            if (!Double.isNaN(xyStdDev) && updateOdometry(swerve, mt2, m_frameCameras[i], xyStdDev, 999999.0)) {
+                used++;
+            }
         }
+        SmartDashboard.putNumber("Vision/FusedFrames", used);
     }
 
-    private static Matrix<N3, N1> getEstimationStdDevs(LimelightHelpers.PoseEstimate mt2) {
-        // 基础标准差系数（根据你们相机的分辨率调整，默认可设为 0.1 或 0.2）
-        double kPos = 0.1;
+    /**
+     * @return 位置标准差（米），单标签 ambiguity 太大时返回 NaN 表示不用
+     */
+    private static double getFusionStdDev(PoseEstimateBuffer mt2, int camera, double speed) {
+        double xyStdDev = VisionConstants.kPosStdDevScale * mt2.avgTagDist * mt2.avgTagDist;
+        if (mt2.tagCount >= 2) {
+            xyStdDev *= 0.5;
+        } else {
+            // 单标签时 MegaTag2 靠陀螺仪定朝向，ambiguity 大说明角点解算不可靠
+            double ambiguity = mt2.getMaxAmbiguity();
+            if (ambiguity > VisionConstants.kMaxAmbiguity) {
+                return Double.NaN;
+            }
+            xyStdDev *= 1.0 + VisionConstants.kAmbiguityWeight * ambiguity;
+        }
+        xyStdDev *= VisionConstants.kCameraStdDevScale[camera];
+        // 拍照到现在底盘又走了一段，里程计回放不完美，越慢越准
+        xyStdDev += VisionConstants.kLatencyStdDevPerMps * speed * mt2.latency / 1000.0;
+        return xyStdDev;
+    }
 
+    private static double getEstimationStdDev(PoseEstimateBuffer mt2) {
         // 如果看到多个标签，误差大幅下降
         double trustFactor = mt2.tagCount >= 2 ? 0.5 : 1.0;
 
-        // 计算位置标准差：误差随距离平方增长
-        double xyStdDev = kPos * Math.pow(mt2.avgTagDist, 2) * trustFactor;
+        // 计算位置标准差：误差随距离平方增长，系数和融合时共用 VisionConstants.kPosStdDevScale
+        double xyStdDev = VisionConstants.kPosStdDevScale * mt2.avgTagDist * mt2.avgTagDist * trustFactor;
 
+        return xyStdDev;
+    }
+
+    // 如果LL看到目标，则返回到目标的距离
+    // 参数minDist表示当前看到的目标距离大于这个值，则忽略此目标，负数则无效
+    private static void updateOdometry(CommandSwerveDrivetrain swerve, PoseEstimateBuffer mt2, int camera) {
         // 关键：动态旋转修正！
         // 如果误差较小且距离较近，我们给出一个可以接受的旋转标准差（例如 0.8 弧度）
         // 这样当陀螺仪在坡道漂移时，视觉可以慢慢把它拉回来
         // double rotStdDev = (mt2.tagCount >= 2 && mt2.avgTagDist < 3.0) ? 0.8 : 999999.0;
         double rotStdDev = 999999.0;
-
-        return VecBuilder.fill(xyStdDev, xyStdDev, rotStdDev);
+        updateOdometry(swerve, mt2, camera, getEstimationStdDev(mt2), rotStdDev);
     }
 
-    // 如果LL看到目标，则返回到目标的距离
-    // 参数minDist表示当前看到的目标距离大于这个值，则忽略此目标，负数则无效
-    private static void updateOdometry(CommandSwerveDrivetrain swerve, LimelightHelpers.PoseEstimate mt2) {
-        m_isSeen = true;
+    /**
+     * @return 被离群值剔除拒掉时返回 false
+     */
+    private static boolean updateOdometry(CommandSwerveDrivetrain swerve, PoseEstimateBuffer mt2, int camera,
+                                          double xyStdDev, double rotStdDev) {
         double captureTime2 = Utils.fpgaToCurrentTime(mt2.timestampSeconds);
+        if (!passesGate(swerve, mt2, camera, captureTime2, xyStdDev)) {
+            return false;
+        }
+        m_isSeen = true;
+        // 只有通过剔除的测量才算看到了标签
+        LastSeenAPTime = System.currentTimeMillis();
 
-        swerve.addVisionMeasurement(mt2.pose,
+        // addVisionMeasurement 是同步拷贝的，标准差矩阵可以复用
+        m_stdDevs.set(0, 0, xyStdDev);
+        m_stdDevs.set(1, 0, xyStdDev);
+        m_stdDevs.set(2, 0, rotStdDev);
+        swerve.addVisionMeasurement(mt2.toPose2d(),
                 captureTime2,
-                getEstimationStdDevs(mt2));
+                m_stdDevs);
+        return true;
+    }
+
+    /**
+     * 离群值剔除，见 VisionOutlierGate
+     */
+    private static boolean passesGate(CommandSwerveDrivetrain swerve, PoseEstimateBuffer mt2, int camera,
+                                      double captureTime, double xyStdDev) {
+        if (!VisionConstants.kUseOutlierRejection) {
+            return m_gate.accept(camera);
+        }
+        Optional<Pose2d> history = swerve.samplePoseAt(captureTime);
+        if (history.isEmpty()) {
+            // 历史里没有这个时间（太旧或者刚重置），没法比，直接用
+            return m_gate.accept(camera);
+        }
+        Pose2d odom = history.get();
+        return m_gate.test(camera, mt2.x, mt2.y, odom.getX(), odom.getY(), xyStdDev);
+    }
+
+    private static void publishGateStats() {
+        for (int i = 0; i < limelightNames.length; i++) {
+            SmartDashboard.putNumber(m_acceptedKeys[i], m_gate.getAcceptedCount(i));
+            SmartDashboard.putNumber(m_rejectedKeys[i], m_gate.getRejectedCount(i));
+            SmartDashboard.putNumber(m_mahalanobisKeys[i], m_gate.getLastMahalanobis(i));
+        }
     }
 
     /**
@@ -126,12 +304,12 @@ public class LimelightModule {
     public static Optional<Rotation2d> getTrustedVisionRotation() {
         for (String name : limelightNames) {
             // 使用 MT1 获取 BotPose，因为我们只需要它的 Rotation 独立观测值
-            LimelightHelpers.PoseEstimate mt1 = LimelightHelpers.getBotPoseEstimate_wpiBlue(name);
+            PoseEstimateBuffer mt1 = m_mt1Buffer;
 
-            if (mt1 != null && mt1.tagCount >= 2 && mt1.avgTagDist < 3.0) {
+            if (LimelightHelpers.getBotPoseEstimate_wpiBlue(name, mt1) && mt1.tagCount >= 2 && mt1.avgTagDist < 3.0) {
                 // 只有看到2个以上标签且距离近时，才认为这个角度是“真理”
                 Global.onRotationAdjusted();
-                return Optional.of(mt1.pose.getRotation());
+                return Optional.of(new Rotation2d(mt1.rotationRadians));
             }
         }
         return Optional.empty();
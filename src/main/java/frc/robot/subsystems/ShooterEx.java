@@ -3,20 +3,31 @@ package frc.robot.subsystems;
 import com.ctre.phoenix6.controls.Follower;
 import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.MotorAlignmentValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.sim.ChassisReference;
+
+import edu.wpi.first.math.system.plant.DCMotor;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.Constants.SimConstants;
+import frc.robot.utils.MechanismSim;
 
 
 public class ShooterEx {
     public ShooterEx() {
         init();
+        if (Utils.isSimulation()) {
+            MechanismSim.add(MechanismSim.flywheel("Shooter", m_primary, ChassisReference.Clockwise_Positive,
+                    DCMotor.getKrakenX60(2), SimConstants.kShooterMOI, SimConstants.kShooterGearing)
+                .withFollower(m_follower, ChassisReference.CounterClockwise_Positive, true));
+        }
     }
     private final CANBus shooterCanBus = new CANBus(Constants.ShooterConstants.canBusName);
     private final TalonFX m_primary = new TalonFX(Constants.ShooterConstants.PRIMARY_CAN_ID, shooterCanBus);
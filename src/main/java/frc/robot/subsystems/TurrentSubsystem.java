@@ -1,11 +1,15 @@
 package frc.robot.subsystems;
 
+import java.awt.geom.Point2D;
+
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.MotionMagicVoltage;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.sim.ChassisReference;
 import com.ctre.phoenix6.swerve.SwerveDrivetrain.SwerveDriveState;
 
 import edu.wpi.first.math.MathUtil;
@@ -14,7 +18,9 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.interpolation.InterpolatingDoubleTreeMap;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -26,16 +32,24 @@ import edu.wpi.first.wpilibj2.command.button.Trigger;
 
 import frc.robot.Constants;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.SimConstants;
 import frc.robot.Library.team1706.LinearInterpolationTable;
-import frc.robot.Library.team1706.FieldRelativeSpeed;
-import frc.robot.Library.team1706.FieldRelativeAccel;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
 import frc.robot.Library.team19725.Point3D;
 import frc.robot.commands.FeedingCmd;
 import frc.robot.commands.ShooterCmd;
 import frc.robot.commands.TurnTurrentCmd;
+import frc.robot.utils.AimPredictor;
+import frc.robot.utils.BallisticSimulator;
+import frc.robot.utils.BallisticTables;
 import frc.robot.utils.CalculatePassFuelTarget;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.MechanismSim;
 import frc.robot.utils.MessageSender;
 import frc.robot.utils.MiscUtils;
+import frc.robot.utils.ShotGrid;
+import frc.robot.utils.ShotSolver;
+import frc.robot.utils.TurretWrapPlanner;
 
 
 public class TurrentSubsystem extends SubsystemBase {
@@ -51,13 +65,18 @@ public class TurrentSubsystem extends SubsystemBase {
         // --- 新增：运动参数控制 ---
         public static final double kManualCruiseVelocity = 40.0; // 手动时的低速限制（圈/秒）
         public static final double kAimingCruiseVelocity = 120.0; // 自动瞄准时的快速限制（圈/秒）
+        public static final double kMotionMagicAcceleration = 140.0; // 电机圈/秒^2
+
+        // --- 瞄准延迟补偿 ---
+        public static final boolean kUseAimLatencyCompensation = true;
+        public static final double kAimActuationDelay = 0.06; // CAN 往返 + MotionMagic 响应（秒），待实测
 
-        private static final double r_wheel = 0.05;      // 射击飞轮半径， 米
+        public static final double r_wheel = 0.05;      // 射击飞轮半径， 米
         
         // $\eta$ η(效率系数): 这是一个关键变量，通常在 0.5 到 0.8 之间。
         // 单轮结构（带有固定盖板/Hood）：理论上，球的中心速度只有轮缘速度的一半（因为球的一侧在动，另一侧静止在盖板上）。
         // 此时 $\eta \approx 0.5$。
-        private static final double eta = 0.4;
+        public static final double eta = 0.4;
         // 常数 C 用于换算射击飞轮的RPM和射击小球初速度
         public static final double C = (2 * Math.PI * TurrentConst.r_wheel * TurrentConst.eta);
     }
@@ -89,6 +108,29 @@ public class TurrentSubsystem extends SubsystemBase {
 
     private boolean m_isShootPassBall = false;
 
+    // 弹道仿真生成的表，ShooterConstants.kUseBallisticTables 打开并且部署了文件时才用，否则用手调的表
+    private final BallisticTables m_ballisticTables = ShooterConstants.kUseBallisticTables
+        ? BallisticTables.load(Filesystem.getDeployDirectory().toPath().resolve(BallisticSimulator.FILE_NAME))
+        : null;
+    private final MonotoneCubicInterpolationTable m_tofTable = m_ballisticTables != null
+        ? m_ballisticTables.getTimeOfFlightTable() : ShooterConstants.kShotTimeTable;
+    private final LinearInterpolationTable m_rpsTable = m_ballisticTables != null
+        ? m_ballisticTables.getRpsTable() : ShooterConstants.kRPMTable;
+
+    private final ShotSolver m_shotSolver = new ShotSolver(m_tofTable);
+    private final AimPredictor m_aimPredictor = new AimPredictor(TurrentConst.kAimActuationDelay);
+    private double m_aimVelocityRps = 0; // 瞄准时炮台电机的速度前馈（圈/秒）
+    // 自动瞄准时按限位选圈数，代替 normalizeAngle
+    private final TurretWrapPlanner m_wrapPlanner = new TurretWrapPlanner(
+        TurrentConst.minAngle, TurrentConst.maxAngle,
+        TurrentConst.kAimingCruiseVelocity * TurrentConst.kTurretDegreeForOneRotation,
+        TurrentConst.kMotionMagicAcceleration * TurrentConst.kTurretDegreeForOneRotation);
+
+    // 离线生成的查找表，没有或者过期时为 null，全部用 m_shotSolver
+    private final ShotGrid m_shotGrid = ShotGrid.load(
+        Filesystem.getDeployDirectory().toPath().resolve(ShotGrid.FILE_NAME),
+        m_tofTable, m_rpsTable);
+
     public void setShootTrigger(Trigger trigger) throws  Exception {
         if (m_shootTrigger != null) {
             throw new Exception("setShootTrigger is called more than once!");
@@ -157,8 +199,14 @@ public class TurrentSubsystem extends SubsystemBase {
     }
 
     public TurrentSubsystem() {
+        m_shotSolver.setTurretOffset(TurrentConst.turrentOffset.getX(), TurrentConst.turrentOffset.getY());
+        m_aimPredictor.setTurretOffset(TurrentConst.turrentOffset.getX(), TurrentConst.turrentOffset.getY());
         setupKFactorMap();
         init();
+        if (Utils.isSimulation()) {
+            MechanismSim.add(MechanismSim.dcMotor("Turret", m_motor, ChassisReference.CounterClockwise_Positive,
+                DCMotor.getKrakenX60(1), SimConstants.kTurretMOI, 360.0 / TurrentConst.kTurretDegreeForOneRotation));
+        }
     }
 
     public void setDriver(CommandSwerveDrivetrain d) {
@@ -178,10 +226,12 @@ public class TurrentSubsystem extends SubsystemBase {
 
     @Override
     public void periodic() {
+        LoopProfiler.start(LoopProfiler.TURRENT);
         update();
         SmartDashboard.putNumber("Turret/Current Angle", getCurrentAngle());
         SmartDashboard.putNumber("Turret/Target Angle", m_targetAngle);
         SmartDashboard.putNumber("Turret/Position", m_motor.getPosition().getValueAsDouble());
+        LoopProfiler.end(LoopProfiler.TURRENT);
     }
 
     public double getCurrentAngle() {
@@ -205,8 +255,9 @@ public class TurrentSubsystem extends SubsystemBase {
         this.updateFeeding();
         // 计算目标位置（圈数）
         double motorRotationTarget = -m_targetAngle / TurrentConst.kTurretDegreeForOneRotation;
-        // 始终使用 MotionMagic 运行，它会根据配置的 CruiseVelocity 自动控制速度
-        m_motor.setControl(mMMReq.withPosition(motorRotationTarget));
+        // 始终使用 MotionMagic 运行，它会根据配置的 CruiseVelocity 自动控制速度；瞄准移动目标时再叠加速度前馈
+        m_motor.setControl(mMMReq.withPosition(motorRotationTarget)
+            .withFeedForward(m_aimVelocityRps * Constants.TurrentMotor.KV_AIM_FF));
     }
 
     // --- 统一后的控制接口 ---
@@ -294,6 +345,13 @@ public class TurrentSubsystem extends SubsystemBase {
     private final InterpolatingDoubleTreeMap m_kFactorMap = new InterpolatingDoubleTreeMap();
 
     private void setupKFactorMap() {
+        if (m_ballisticTables != null) {
+            // K 就是飞行时间，直接用仿真的表
+            for (Point2D point : m_ballisticTables.getTimeOfFlightPoints()) {
+                m_kFactorMap.put(point.getX(), point.getY());
+            }
+            return;
+        }
         // 数据点格式：m_kFactorMap.put(距离_米, 对应的K系数);
         // 这里的 K 约等于球的飞行时间 (ToF)
         // 注意：随着距离增加，K 增加的速度通常会快于距离增加的速度（因为空气阻力减速）
@@ -323,60 +381,37 @@ public class TurrentSubsystem extends SubsystemBase {
     }
 
     private Translation2d getPWYShootTargetPosWithShift() {
-        int max_iteration = 5;
-        double accComp = 0.010;
-        Translation2d virtualTarget = ShooterConstants.targetHub;
-        // Get drive speed, acc, and translation
-        FieldRelativeSpeed driveFieldSpeed = m_drivetrain.getFieldRelativeSpeed();
-        FieldRelativeAccel driveFieldAccel = m_drivetrain.getFieldRelativeAccel();
-        // Translation2d drivetrainTranslation = m_drivetrain.getPose().getTranslation();
-        Translation2d turretWorldTranslation = this.getTurretWorldPose(m_drivetrain.getPose()).getTranslation();
-        FieldRelativeSpeed turretSpeed = this.getTurretSpeed(driveFieldSpeed);
-        // Get initial virtual shot distance and time
-        double shotDistance = virtualTarget.getDistance(turretWorldTranslation);
-        double shotTime = ShooterConstants.kShotTimeTable.getOutput(shotDistance);
-        // Iterate to get better shot time and target
-        for (int i=0; i < max_iteration; i++) {
-            // Calculate new virtual shot target
-            Translation2d targetShiftVector = new Translation2d(
-                -shotTime * (turretSpeed.getX() + driveFieldAccel.ax * accComp), 
-                -shotTime * (turretSpeed.getY() + driveFieldAccel.ay * accComp));
-            virtualTarget = ShooterConstants.targetHub.plus(targetShiftVector);
-            // Calculate new virtual shot time
-            Translation2d toVirtualTargetVector = virtualTarget.minus(turretWorldTranslation);
-            double newShotTime = ShooterConstants.kShotTimeTable.getOutput(toVirtualTargetVector.getNorm());
-            // If time converge, break the loop
-            if (Math.abs(newShotTime - shotTime) < 0.010) {
-                shotTime = newShotTime;
-                break;
+        // 优先查 ShotGrid；没有表、超出网格或者格子无效时用牛顿法解飞行时间，考虑了炮台偏移、底盘角速度和加速度，见 ShotSolver
+        Pose2d robotPos = m_drivetrain.getPose();
+        Translation2d hub = ShooterConstants.targetHub;
+        if (m_shotGrid != null) {
+            m_shotSolver.updateTurretState(robotPos.getX(), robotPos.getY(), robotPos.getRotation().getRadians(),
+                m_drivetrain.getKinematicState());
+            double tx = m_shotSolver.getTurretX();
+            double ty = m_shotSolver.getTurretY();
+            double vx = m_shotSolver.getTurretVx();
+            double vy = m_shotSolver.getTurretVy();
+            if (m_shotGrid.lookup(tx - hub.getX(), ty - hub.getY(), vx, vy)) {
+                double tof = m_shotGrid.getTimeOfFlight();
+                Translation2d virtualTarget = new Translation2d(hub.getX() - vx * tof, hub.getY() - vy * tof);
+                SmartDashboard.putNumber("deviation", Math.hypot(virtualTarget.getX() - tx, virtualTarget.getY() - ty));
+                SmartDashboard.putBoolean("ShotGrid/Hit", true);
+                m_shootTarget = virtualTarget;
+                return virtualTarget;
             }
-            // Update shot time
-            shotTime = newShotTime;
         }
-        double calc_deviation = virtualTarget.getDistance(turretWorldTranslation);
-        SmartDashboard.putNumber("deviation", calc_deviation);
-        // ntPub.set(new Pose2d(virtualTarget, new Rotation2d(0)));
-        // m_turret.setTarget(virtualTarget);
-        m_shootTarget = virtualTarget;
-        return virtualTarget;
-        // m_shooter.setTargetSpeed(ShooterConstants.kShotTimeTable.getOutput(calc_deviation));
-    }
-    public FieldRelativeSpeed getTurretSpeed(FieldRelativeSpeed robotSpeed) {
-        // made by pwyhyh
-        FieldRelativeSpeed turretSpeed = new FieldRelativeSpeed();
-
-        double robotSpeedX = robotSpeed.getX();
-        double robotSpeedY = robotSpeed.getY();
-        double robotOmega = robotSpeed.getOmega();
+        SmartDashboard.putBoolean("ShotGrid/Hit", false);
 
-        double turretSpeedX = robotSpeedX - robotOmega * TurrentConst.turrentOffset.getX();
-        double turretSpeedY = robotSpeedY + robotOmega * TurrentConst.turrentOffset.getY();
+        m_shotSolver.solve(robotPos.getX(), robotPos.getY(), robotPos.getRotation().getRadians(),
+            m_drivetrain.getKinematicState(), hub.getX(), hub.getY());
+        Translation2d virtualTarget = new Translation2d(m_shotSolver.getVirtualTargetX(), m_shotSolver.getVirtualTargetY());
 
-        turretSpeed.setX(turretSpeedX);
-        turretSpeed.setY(turretSpeedY);
-        turretSpeed.setOmega(robotOmega);
-
-        return turretSpeed;
+        SmartDashboard.putNumber("deviation", m_shotSolver.getDistance());
+        SmartDashboard.putNumber("ShotSolver/Iterations", m_shotSolver.getIterations());
+        SmartDashboard.putNumber("ShotSolver/AvgIterations", m_shotSolver.getAverageIterations());
+        SmartDashboard.putNumber("ShotSolver/Failures", m_shotSolver.getFailureCount());
+        m_shootTarget = virtualTarget;
+        return virtualTarget;
     }
 
     private Translation2d getShootTargetPosWithShift() {
@@ -423,12 +458,16 @@ public class TurrentSubsystem extends SubsystemBase {
     }
 
     private void startAndUpdateAim() {
+        if (!m_isStartAiming) {
+            m_wrapPlanner.reset();
+        }
         m_isStartAiming = true;
         _updateAim();
     }
 
     private void stopAim() {
         m_isStartAiming = false;
+        m_aimVelocityRps = 0;
     }
 
 
@@ -454,10 +493,28 @@ public class TurrentSubsystem extends SubsystemBase {
         if (m_isStartAiming) {
             Translation2d targetPos = m_isShootPassBall ? getPassballTarget() : getPWYShootTargetPosWithShift();
             if (targetPos != null) {
-                double angle = calcTurrentAngle(m_drivetrain.getPose(), targetPos);
+                Pose2d aimPose = m_drivetrain.getPose();
+                m_aimVelocityRps = 0;
+                double aimRateDeg = 0;
+                if (TurrentConst.kUseAimLatencyCompensation) {
+                    // 按位姿延迟 + 执行延迟外推，炮台转到位时机器人已经在那里了
+                    m_aimPredictor.predict(aimPose.getX(), aimPose.getY(), aimPose.getRotation().getRadians(),
+                        m_drivetrain.getKinematicState(), Utils.getCurrentTimeSeconds());
+                    aimPose = new Pose2d(m_aimPredictor.getX(), m_aimPredictor.getY(), new Rotation2d(m_aimPredictor.getHeading()));
+                    aimRateDeg = Math.toDegrees(m_aimPredictor.computeAimRate(targetPos.getX(), targetPos.getY()));
+                    // 电机方向和角度相反，见 update()
+                    m_aimVelocityRps = -aimRateDeg / TurrentConst.kTurretDegreeForOneRotation;
+                    SmartDashboard.putNumber("Turret/AimLookahead", m_aimPredictor.getLookahead());
+                }
+                double angle = calcTurrentAngle(aimPose, targetPos);
                 m_shooterAimDir = new Pose2d(m_shooterAimDir.getTranslation(), Rotation2d.fromDegrees(angle));
                 setSpeed(TurrentConst.kAimingCruiseVelocity);
-                setTargetAngle(angle);
+                // 按限位和目标的运动选圈数，快越过接缝时提前换圈
+                m_targetAngle = m_wrapPlanner.plan(angle, getCurrentAngle(), aimRateDeg);
+                SmartDashboard.putBoolean("Turret/PreUnwinding", m_wrapPlanner.isPreUnwinding());
+                if (m_targetAngle <= TurrentConst.minAngle || m_targetAngle >= TurrentConst.maxAngle) {
+                    m_aimVelocityRps = 0; // 顶到限位了，不要再往外推
+                }
             }
             else {
                 stopAim();
@@ -499,7 +556,7 @@ public class TurrentSubsystem extends SubsystemBase {
         // --- 核心：Motion Magic 配置 ---
         // 通过这个配置来实现你要求的“低速”
         config.MotionMagic.MotionMagicCruiseVelocity = TurrentConst.kManualCruiseVelocity; 
-        config.MotionMagic.MotionMagicAcceleration = 140.0; // 加速度，决定起步有多“肉”
+        config.MotionMagic.MotionMagicAcceleration = TurrentConst.kMotionMagicAcceleration; // 加速度，决定起步有多“肉”
         config.MotionMagic.MotionMagicJerk = .0;       // 让运动更丝滑
 
 
@@ -523,7 +580,7 @@ public class TurrentSubsystem extends SubsystemBase {
      * @param robotPos 机器人在场地坐标系下的位姿
      * @return 炮台在场地坐标系下的 Pose2d（位置 + 朝向）
      */
-    public Pose2d getTurretWorldPose(Pose2d robotPos) {
+    public static Pose2d getTurretWorldPose(Pose2d robotPos) {
         // 炮台在机器人坐标系下的平移量需要以机器人当前朝向旋转后再加到机器人原点
         Translation2d worldTrans = robotPos.getTranslation().plus(
             TurrentConst.turrentOffset.getTranslation().rotateBy(robotPos.getRotation())
@@ -540,7 +597,7 @@ public class TurrentSubsystem extends SubsystemBase {
      * @param targetPos 瞄准目标在场地上的坐标
      * @return 炮台相对于其初始位置的旋转角度（度），已应用限制
      */
-    public double calcTurrentAngle(Pose2d robotPos, Translation2d targetPos) {
+    public static double calcTurrentAngle(Pose2d robotPos, Translation2d targetPos) {
         // 1. 计算炮台在场地上的实际世界位姿 (位置 + 朝向)
         // 提取为独立方法 getTurretWorldPose(robotPos)
         Pose2d turretWorldPose = getTurretWorldPose(robotPos);
@@ -666,7 +723,6 @@ public class TurrentSubsystem extends SubsystemBase {
 
         return vRadial;
     }
-    private final LinearInterpolationTable m_rpsTable = Constants.ShooterConstants.kRPMTable;
     private void updateShooting() {
         if (m_isShooting) {
             // 1. 计算target位置，叠加机器本身速度带来的偏移
@@ -686,7 +742,7 @@ public class TurrentSubsystem extends SubsystemBase {
         if (m_shooter.getIsShooting()) {
             Pose2d robotPos = m_drivetrain.getPose();
             ChassisSpeeds chassisSpeeds = m_drivetrain.getSpeeds();
-            double distance = this.getTurretWorldPose(robotPos)
+            double distance = getTurretWorldPose(robotPos)
                 .getTranslation()
                 .getDistance(Constants.ShooterConstants.targetHub);
 
@@ -0,0 +1,121 @@
+package frc.robot.utils;
+
+/**
+ * 炮台瞄准的延迟补偿
+ *
+ * 炮台拿到的位姿已经是过去的（里程计 / 视觉融合有延迟），发出去的指令还要经过 CAN 和 MotionMagic 才真正转到位，
+ * 所以按当前位姿瞄准时，机器人一动炮台就总是落后。这里把位姿往前外推：
+ *   外推时间 = (现在 - 位姿时间戳) + 执行延迟
+ *   p(t) = p + v*t + a*t^2/2，heading(t) = heading + omega*t + alpha*t^2/2
+ * 同时算出外推时刻炮台需要相对底盘转动的角速度，给 MotionMagic 当速度前馈。
+ *
+ * 全部是 double 运算，不分配内存，结果用 getter 读。
+ */
+public class AimPredictor {
+    private double m_actuationDelay;
+    private double m_maxLookahead = 0.25;
+    private double m_offsetX;
+    private double m_offsetY;
+
+    // --- 结果 ---
+    private double m_lookahead;
+    private double m_x, m_y, m_heading;
+    private double m_vx, m_vy, m_omega;
+    private double m_aimRate;
+
+    /**
+     * @param seconds 执行延迟（CAN 往返 + MotionMagic 响应），秒
+     */
+    public AimPredictor(double seconds) {
+        m_actuationDelay = seconds;
+    }
+
+    /**
+     * @param x 炮台在机器人坐标系下的前向偏移（米）
+     * @param y 炮台在机器人坐标系下的左向偏移（米）
+     */
+    public void setTurretOffset(double x, double y) {
+        m_offsetX = x;
+        m_offsetY = y;
+    }
+
+    public void setActuationDelay(double seconds) {
+        m_actuationDelay = Math.max(0.0, seconds);
+    }
+
+    public double getActuationDelay() {
+        return m_actuationDelay;
+    }
+
+    /**
+     * @param seconds 外推时间上限，时间戳异常（比如里程计卡住）时不会外推到很远
+     */
+    public void setMaxLookahead(double seconds) {
+        m_maxLookahead = Math.max(0.0, seconds);
+    }
+
+    /**
+     * 把位姿外推到 now + 执行延迟
+     * @param x 机器人位姿 x（场地坐标，米）
+     * @param y 机器人位姿 y
+     * @param heading 机器人朝向（弧度）
+     * @param state 和位姿同一帧的速度 / 加速度，时间戳用来算位姿的延迟
+     * @param now 当前时间（和 state 同一时间基准，秒）
+     */
+    public void predict(double x, double y, double heading, KinematicStateEstimator.View state, double now) {
+        double age = Math.max(0.0, now - state.getTimestamp());
+        double t = Math.min(age + m_actuationDelay, m_maxLookahead);
+        double halfT2 = 0.5 * t * t;
+        m_lookahead = t;
+        m_x = x + state.getVx() * t + state.getAx() * halfT2;
+        m_y = y + state.getVy() * t + state.getAy() * halfT2;
+        m_heading = heading + state.getOmega() * t + state.getAlpha() * halfT2;
+        m_vx = state.getVx() + state.getAx() * t;
+        m_vy = state.getVy() + state.getAy() * t;
+        m_omega = state.getOmega() + state.getAlpha() * t;
+    }
+
+    /**
+     * 按外推后的状态，算炮台相对底盘需要的角速度（目标点不动）
+     * 视线角 theta = atan2(ry, rx)，r = 目标 - 炮台，dtheta/dt = (ry*ux - rx*uy) / |r|^2，u 是炮台的场地速度；
+     * 炮台相对底盘的角速度再减去底盘自己的 omega
+     * @return 弧度/秒，逆时针为正
+     */
+    public double computeAimRate(double targetX, double targetY) {
+        double cos = Math.cos(m_heading);
+        double sin = Math.sin(m_heading);
+        double rx = m_offsetX * cos - m_offsetY * sin;
+        double ry = m_offsetX * sin + m_offsetY * cos;
+        double ux = m_vx - m_omega * ry;
+        double uy = m_vy + m_omega * rx;
+        double lx = targetX - (m_x + rx);
+        double ly = targetY - (m_y + ry);
+        double dist2 = lx * lx + ly * ly;
+        double losRate = dist2 > 1e-6 ? (ly * ux - lx * uy) / dist2 : 0.0;
+        m_aimRate = losRate - m_omega;
+        return m_aimRate;
+    }
+
+    /** @return 实际用的外推时间（秒） */
+    public double getLookahead() {
+        return m_lookahead;
+    }
+
+    public double getX() {
+        return m_x;
+    }
+
+    public double getY() {
+        return m_y;
+    }
+
+    /** @return 外推后的朝向（弧度，没有归一化） */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    /** @return 最近一次 computeAimRate 的结果（弧度/秒） */
+    public double getAimRate() {
+        return m_aimRate;
+    }
+}
@@ -0,0 +1,326 @@
+package frc.robot.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.subsystems.TurrentSubsystem.TurrentConst;
+
+/**
+ * 离线弹道仿真，用来检查 / 重新生成 kRPMTable、kShotTimeTable 和 K 系数表
+ *
+ * 三维质点模型，RK4 积分：重力 + 空气阻力 + 马格努斯升力（升力系数按自旋比 S 估算：Cl = S / (2S + 1)）。
+ * - 出膛速度 = TurrentConst.C * 飞轮转速（C = 2*pi*r_wheel*eta）
+ * - 单轮 + 固定盖板，球贴着盖板滚出去，后旋的表面速度约等于轮缘速度的一半：omega = pi*r_wheel*rps / r_ball
+ * - 判定：球下落穿过开口高度时，离目标中心的水平距离小于开口半径 - 球半径
+ *
+ * 批量计算用 ForkJoin 按下标二分拆开，每个任务自己一个 SplittableRandom（种子固定，结果可复现）。
+ * main() 生成 src/main/deploy/ballistic_tables.txt，机器人启动时由 BallisticTables 读取。
+ * 球和场地的参数是按规则和手调表估的，拿实测数据修正之后生成的表才可信，所以机器人默认仍然用手调的表
+ * （ShooterConstants.kUseBallisticTables）。
+ */
+public class BallisticSimulator {
+    // --- 球（FUEL）---
+    private static final double BALL_MASS = 0.215;          // kg
+    private static final double BALL_RADIUS = 0.075;        // m
+    private static final double DRAG_COEFFICIENT = 0.50;
+    private static final double AIR_DENSITY = 1.20;         // kg/m^3
+
+    // --- 发射机构 ---
+    private static final double LAUNCH_ANGLE_DEG = 68.0;    // 仰角，按手调表的转速和飞行时间拟合
+    private static final double LAUNCH_HEIGHT = 0.50;       // 出膛高度（m）
+
+    // --- 目标（HUB）---
+    private static final double TARGET_HEIGHT = 1.83;       // 开口高度（m）
+    private static final double TARGET_RADIUS = 0.53;       // 开口半径（m）
+
+    // --- 散布（一倍标准差），算命中率用 ---
+    private static final double SIGMA_RPS = 1.0;
+    private static final double SIGMA_ANGLE_DEG = 1.0;
+    private static final double SIGMA_YAW_DEG = 0.75;
+
+    // --- 积分 ---
+    private static final double TIME_STEP = 0.002;
+    private static final double MAX_TIME = 4.0;
+    private static final double GRAVITY = 9.81;
+
+    // --- 生成的表 ---
+    public static final String FILE_NAME = "ballistic_tables.txt";
+    private static final double MIN_DISTANCE = 1.0;
+    private static final double MAX_DISTANCE = 6.0;
+    private static final double DISTANCE_STEP = 0.25;
+    private static final double MIN_RPS = 20.0;
+    private static final double MAX_RPS = 120.0;
+    private static final double HIT_MAP_MIN_RPS = 30.0;
+    private static final double HIT_MAP_MAX_RPS = 100.0;
+    private static final int HIT_SAMPLES = 256;
+
+    private static final double DRAG_K = 0.5 * AIR_DENSITY * Math.PI * BALL_RADIUS * BALL_RADIUS / BALL_MASS;
+
+    /**
+     * 一次发射的结果：球下落穿过开口高度的位置和时间
+     */
+    public static class Crossing {
+        public boolean valid;   // 没到达开口高度时为 false
+        public double x;        // 沿射击方向的水平距离（m）
+        public double y;        // 横向偏差（m）
+        public double time;     // 飞行时间（s）
+    }
+
+    /**
+     * 模拟一发，炮台静止
+     * @param rps 飞轮转速
+     * @param angleDeg 仰角（度）
+     * @param yaw 水平方向偏角（弧度，0 = 正对目标，沿 +x）
+     */
+    public static Crossing simulate(double rps, double angleDeg, double yaw, Crossing out) {
+        return simulate(rps, angleDeg, yaw, backspin(rps), out);
+    }
+
+    /**
+     * 单轮 + 盖板出膛时的后旋角速度（rad/s）
+     */
+    public static double backspin(double rps) {
+        return Math.PI * TurrentConst.r_wheel * rps / BALL_RADIUS;
+    }
+
+    /**
+     * @param spin 后旋角速度（rad/s），0 表示不转，负数是上旋
+     */
+    public static Crossing simulate(double rps, double angleDeg, double yaw, double spin, Crossing out) {
+        double speed = TurrentConst.C * rps;
+        double pitch = Math.toRadians(angleDeg);
+        double horizontal = speed * Math.cos(pitch);
+        double[] s = {
+            0.0, 0.0, LAUNCH_HEIGHT,
+            horizontal * Math.cos(yaw), horizontal * Math.sin(yaw), speed * Math.sin(pitch),
+        };
+        // 后旋：转轴水平、垂直于出膛方向，omega = 出膛方向 x z，
+        // 这样 omega x v 朝上（沿 +x 打时 omega 沿 -y，升力 = -wy*vx > 0）
+        double wx = Math.sin(yaw) * spin;
+        double wy = -Math.cos(yaw) * spin;
+
+        double[] prev = new double[6];
+        double[] k1 = new double[6], k2 = new double[6], k3 = new double[6], k4 = new double[6], tmp = new double[6];
+        double t = 0.0;
+        out.valid = false;
+        while (t < MAX_TIME) {
+            System.arraycopy(s, 0, prev, 0, 6);
+            derivative(s, wx, wy, k1);
+            step(s, k1, 0.5 * TIME_STEP, tmp);
+            derivative(tmp, wx, wy, k2);
+            step(s, k2, 0.5 * TIME_STEP, tmp);
+            derivative(tmp, wx, wy, k3);
+            step(s, k3, TIME_STEP, tmp);
+            derivative(tmp, wx, wy, k4);
+            for (int i = 0; i < 6; i++) {
+                s[i] += TIME_STEP / 6.0 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+            }
+            t += TIME_STEP;
+            if (s[5] < 0 && s[2] < TARGET_HEIGHT) {
+                if (prev[2] >= TARGET_HEIGHT) {
+                    // 在这一步里线性插值出穿过的位置
+                    double f = (prev[2] - TARGET_HEIGHT) / (prev[2] - s[2]);
+                    out.valid = true;
+                    out.x = prev[0] + f * (s[0] - prev[0]);
+                    out.y = prev[1] + f * (s[1] - prev[1]);
+                    out.time = t - TIME_STEP + f * TIME_STEP;
+                }
+                return out; // 最高点都没到开口高度时 valid = false
+            }
+        }
+        return out;
+    }
+
+    private static void derivative(double[] s, double wx, double wy, double[] d) {
+        double vx = s[3], vy = s[4], vz = s[5];
+        double v = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        d[0] = vx;
+        d[1] = vy;
+        d[2] = vz;
+        d[3] = 0.0;
+        d[4] = 0.0;
+        d[5] = -GRAVITY;
+        if (v < 1e-9) {
+            return;
+        }
+        // 阻力 -k*Cd*|v|*v
+        double drag = DRAG_K * DRAG_COEFFICIENT * v;
+        d[3] -= drag * vx;
+        d[4] -= drag * vy;
+        d[5] -= drag * vz;
+        // 升力 k*Cl*|v|^2，方向 omega x v
+        double cx = wy * vz;
+        double cy = -wx * vz;
+        double cz = wx * vy - wy * vx;
+        double cn = Math.sqrt(cx * cx + cy * cy + cz * cz);
+        if (cn > 1e-9) {
+            double spinRatio = BALL_RADIUS * Math.sqrt(wx * wx + wy * wy) / v;
+            double lift = DRAG_K * spinRatio / (2 * spinRatio + 1) * v * v / cn;
+            d[3] += lift * cx;
+            d[4] += lift * cy;
+            d[5] += lift * cz;
+        }
+    }
+
+    private static void step(double[] s, double[] d, double h, double[] out) {
+        for (int i = 0; i < 6; i++) {
+            out[i] = s[i] + h * d[i];
+        }
+    }
+
+    /**
+     * 二分找正中目标的转速（仰角大于 45 度，转速越高落点越远）
+     * @return [转速, 飞行时间]，够不到时返回 null
+     */
+    public static double[] solveRps(double distance) {
+        Crossing c = new Crossing();
+        double lo = MIN_RPS;
+        double hi = MAX_RPS;
+        if (!simulate(hi, LAUNCH_ANGLE_DEG, 0.0, c).valid || c.x < distance) {
+            return null;
+        }
+        for (int i = 0; i < 50 && hi - lo > 1e-4; i++) {
+            double mid = 0.5 * (lo + hi);
+            if (!simulate(mid, LAUNCH_ANGLE_DEG, 0.0, c).valid || c.x < distance) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        simulate(hi, LAUNCH_ANGLE_DEG, 0.0, c);
+        return new double[] { hi, c.time };
+    }
+
+    /**
+     * 蒙特卡洛命中率：转速、仰角、偏角加高斯散布
+     */
+    public static double hitProbability(double distance, double rps, int samples, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Crossing c = new Crossing();
+        double radius = TARGET_RADIUS - BALL_RADIUS;
+        int hits = 0;
+        for (int i = 0; i < samples; i++) {
+            simulate(rps + gaussian(random) * SIGMA_RPS,
+                LAUNCH_ANGLE_DEG + gaussian(random) * SIGMA_ANGLE_DEG,
+                Math.toRadians(gaussian(random) * SIGMA_YAW_DEG), c);
+            if (c.valid && Math.hypot(c.x - distance, c.y) < radius) {
+                hits++;
+            }
+        }
+        return (double) hits / samples;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    /**
+     * 把 [lo, hi) 二分成单个下标，交给 ForkJoinPool 并行执行
+     */
+    private static class ParallelFor extends RecursiveAction {
+        private final int m_lo;
+        private final int m_hi;
+        private final IntConsumer m_job;
+
+        ParallelFor(int lo, int hi, IntConsumer job) {
+            m_lo = lo;
+            m_hi = hi;
+            m_job = job;
+        }
+
+        @Override
+        protected void compute() {
+            if (m_hi - m_lo <= 1) {
+                if (m_hi > m_lo) {
+                    m_job.accept(m_lo);
+                }
+                return;
+            }
+            int mid = (m_lo + m_hi) >>> 1;
+            invokeAll(new ParallelFor(m_lo, mid, m_job), new ParallelFor(mid, m_hi, m_job));
+        }
+    }
+
+    public static void parallelFor(int count, IntConsumer job) {
+        ForkJoinPool.commonPool().invoke(new ParallelFor(0, count, job));
+    }
+
+    /**
+     * 生成表文件
+     *   table 距离 转速 飞行时间 命中率   —— 正中目标的转速，BallisticTables 读这几行
+     *   hit 距离 转速 命中率             —— 命中率图，离线看
+     */
+    public static void generate(Path path) throws IOException {
+        int distances = (int) Math.round((MAX_DISTANCE - MIN_DISTANCE) / DISTANCE_STEP) + 1;
+        int rpsCount = (int) Math.round(HIT_MAP_MAX_RPS - HIT_MAP_MIN_RPS) + 1;
+
+        double[][] table = new double[distances][];
+        double[] tableHit = new double[distances];
+        parallelFor(distances, i -> {
+            double d = MIN_DISTANCE + i * DISTANCE_STEP;
+            table[i] = solveRps(d);
+            if (table[i] != null) {
+                tableHit[i] = hitProbability(d, table[i][0], HIT_SAMPLES, 5515L * 1000 + i);
+            }
+        });
+
+        double[] hitMap = new double[distances * rpsCount];
+        parallelFor(hitMap.length, index -> {
+            double d = MIN_DISTANCE + (index / rpsCount) * DISTANCE_STEP;
+            double rps = HIT_MAP_MIN_RPS + index % rpsCount;
+            hitMap[index] = hitProbability(d, rps, HIT_SAMPLES, index);
+        });
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(String.format(Locale.ROOT,
+                "# BallisticSimulator: angle %.1f deg, launch height %.2f m, target height %.2f m, C %.5f, Cd %.2f, samples %d%n",
+                LAUNCH_ANGLE_DEG, LAUNCH_HEIGHT, TARGET_HEIGHT, TurrentConst.C, DRAG_COEFFICIENT, HIT_SAMPLES));
+            writer.write("# table distance(m) rps tof(s) hitProbability\n");
+            for (int i = 0; i < distances; i++) {
+                if (table[i] != null) {
+                    writer.write(String.format(Locale.ROOT, "table %.2f %.3f %.4f %.3f%n",
+                        MIN_DISTANCE + i * DISTANCE_STEP, table[i][0], table[i][1], tableHit[i]));
+                }
+            }
+            writer.write("# hit distance(m) rps hitProbability\n");
+            for (int i = 0; i < hitMap.length; i++) {
+                writer.write(String.format(Locale.ROOT, "hit %.2f %.0f %.3f%n",
+                    MIN_DISTANCE + (i / rpsCount) * DISTANCE_STEP, HIT_MAP_MIN_RPS + i % rpsCount, hitMap[i]));
+            }
+        }
+    }
+
+    /**
+     * 离线生成入口：gradlew generateBallisticTables
+     * @param args [输出路径]，默认 src/main/deploy/ballistic_tables.txt
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "src/main/deploy/" + FILE_NAME);
+        long start = System.nanoTime();
+        generate(path);
+        System.out.printf(Locale.ROOT, "Ballistic tables written to %s in %.1f s (%d threads)%n",
+            path, (System.nanoTime() - start) * 1e-9, ForkJoinPool.getCommonPoolParallelism());
+
+        // 和手调的表对比
+        System.out.println("distance  rps(hand)  rps(sim)  tof(hand)  tof(sim)");
+        for (double d = 1.5; d <= 4.0 + 1e-9; d += 0.5) {
+            double[] sim = solveRps(d);
+            System.out.printf(Locale.ROOT, "%8.2f  %9.2f  %8.2f  %9.3f  %8.3f%n", d,
+                ShooterConstants.kRPMTable.getOutput(d), sim == null ? Double.NaN : sim[0],
+                ShooterConstants.kShotTimeTable.getOutput(d), sim == null ? Double.NaN : sim[1]);
+        }
+    }
+}
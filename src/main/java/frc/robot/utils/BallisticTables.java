@@ -0,0 +1,91 @@
+package frc.robot.utils;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import frc.robot.Library.team1706.LinearInterpolationTable;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
+
+/**
+ * 读 BallisticSimulator 生成的表文件（deploy/ballistic_tables.txt），只用 "table" 行
+ *
+ * 和手调的表一样，两端各补一个很远的点（-100 / 100 米）保持端点值不变，
+ * 这样飞行时间表的值域是有界的，ShotSolver 的区间保护才成立。
+ */
+public class BallisticTables {
+    private static final double PAD_DISTANCE = 100.0;
+
+    private final MonotoneCubicInterpolationTable m_rpsTable;
+    private final MonotoneCubicInterpolationTable m_tofTable;
+    private final Point2D[] m_tofPoints;
+
+    private BallisticTables(Point2D[] rps, Point2D[] tof) {
+        m_rpsTable = new MonotoneCubicInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, rps);
+        m_tofTable = new MonotoneCubicInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, tof);
+        m_tofPoints = tof;
+    }
+
+    /**
+     * @return 文件不存在或者内容不对时返回 null
+     */
+    public static BallisticTables load(Path path) {
+        if (!Files.exists(path)) {
+            MessageSender.logWarning("BallisticTables 文件不存在: " + path);
+            return null;
+        }
+        ArrayList<double[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("table ")) {
+                    continue;
+                }
+                String[] parts = line.trim().split("\\s+");
+                rows.add(new double[] { Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]) });
+            }
+        } catch (IOException | RuntimeException e) {
+            MessageSender.logError("BallisticTables 读取失败: " + path + ", " + e.getMessage());
+            return null;
+        }
+        if (rows.size() < 2) {
+            MessageSender.logWarning("BallisticTables 点数不够: " + path);
+            return null;
+        }
+
+        int n = rows.size();
+        Point2D[] rps = new Point2D[n + 2];
+        Point2D[] tof = new Point2D[n + 2];
+        for (int i = 0; i < n; i++) {
+            double[] row = rows.get(i);
+            rps[i + 1] = new Point2D.Double(row[0], row[1]);
+            tof[i + 1] = new Point2D.Double(row[0], row[2]);
+        }
+        double[] first = rows.get(0);
+        double[] last = rows.get(n - 1);
+        rps[0] = new Point2D.Double(-PAD_DISTANCE, first[1]);
+        tof[0] = new Point2D.Double(-PAD_DISTANCE, first[2]);
+        rps[n + 1] = new Point2D.Double(PAD_DISTANCE, last[1]);
+        tof[n + 1] = new Point2D.Double(PAD_DISTANCE, last[2]);
+        return new BallisticTables(rps, tof);
+    }
+
+    /** @return 距离（米）-> 飞轮转速 */
+    public MonotoneCubicInterpolationTable getRpsTable() {
+        return m_rpsTable;
+    }
+
+    /** @return 距离（米）-> 飞行时间（秒） */
+    public MonotoneCubicInterpolationTable getTimeOfFlightTable() {
+        return m_tofTable;
+    }
+
+    /** @return 飞行时间的点，K 系数表直接用 */
+    public Point2D[] getTimeOfFlightPoints() {
+        return m_tofPoints.clone();
+    }
+}
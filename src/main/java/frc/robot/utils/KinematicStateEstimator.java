@@ -0,0 +1,286 @@
+package frc.robot.utils;
+
+import java.lang.invoke.VarHandle;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * 底盘场地坐标系速度 / 加速度估计（替代每帧 new FieldRelativeSpeed / FieldRelativeAccel）
+ *
+ * - update() 用里程计状态自己的时间戳算 dt，不再假设 0.02s；时间戳没变（没有新数据）时直接跳过
+ * - 加速度可以选一阶低通，或者 Savitzky-Golay（对最近 N 个速度点做二次最小二乘拟合，取最新点的导数）
+ * - 两个状态缓冲区轮流写，算完之后用顺序锁（seqlock）发布，运行中不产生垃圾
+ *
+ * 只允许一个线程调用 update()（比如 Phoenix 的里程计线程）。
+ * 其它线程用 read(Snapshot) 把最新状态拷到自己的 Snapshot 里，无锁、不分配内存，保证读到的是同一帧的数据。
+ */
+public class KinematicStateEstimator {
+    public static final double MAX_LINEAR_ACCEL = 6.0;          // m/s^2，和 team1706 FieldRelativeAccel 一致
+    public static final double MAX_ANGULAR_ACCEL = 4 * Math.PI; // rad/s^2
+    private static final int MAX_WINDOW = 32;
+
+    public enum AccelFilter {
+        NONE,           // 直接差分
+        LOW_PASS,       // 一阶低通
+        SAVITZKY_GOLAY, // 滑动窗口二次拟合
+    }
+
+    /**
+     * 只读视图，场地坐标系
+     */
+    public interface View {
+        /** @return 这组数据对应的里程计时间戳（秒） */
+        double getTimestamp();
+        double getVx();
+        double getVy();
+        double getOmega();
+        double getAx();
+        double getAy();
+        double getAlpha();
+    }
+
+    /**
+     * 读者自己持有的一份拷贝，只能通过 read() 更新
+     */
+    public static class Snapshot implements View {
+        double timestamp, vx, vy, omega, ax, ay, alpha;
+
+        public double getTimestamp() { return timestamp; }
+        public double getVx() { return vx; }
+        public double getVy() { return vy; }
+        public double getOmega() { return omega; }
+        public double getAx() { return ax; }
+        public double getAy() { return ay; }
+        public double getAlpha() { return alpha; }
+    }
+
+    // 写线程自己的两个缓冲区：上一帧 + 这一帧
+    private final Snapshot[] buffers = new Snapshot[] { new Snapshot(), new Snapshot() };
+    private int front = 0;
+
+    // 发布出去的数据，由 version 保护：奇数表示正在写
+    private volatile long version = 0;
+    private double pubTimestamp, pubVx, pubVy, pubOmega, pubAx, pubAy, pubAlpha;
+
+    private AccelFilter filter = AccelFilter.NONE;
+    private double lowPassTimeConstant = 0.0;
+    private int window = 0;
+
+    // 最近 window 个点的历史（环形），给 Savitzky-Golay 用
+    private final double[] histT = new double[MAX_WINDOW];
+    private final double[] histVx = new double[MAX_WINDOW];
+    private final double[] histVy = new double[MAX_WINDOW];
+    private final double[] histOmega = new double[MAX_WINDOW];
+    private int histHead = 0;
+    private int histSize = 0;
+
+    private boolean hasLast = false;
+
+    /**
+     * 加速度只做差分，不滤波
+     */
+    public void configureNone() {
+        filter = AccelFilter.NONE;
+        reset();
+    }
+
+    /**
+     * @param timeConstant 低通时间常数（秒），越大越平滑、延迟越大
+     */
+    public void configureLowPass(double timeConstant) {
+        filter = AccelFilter.LOW_PASS;
+        lowPassTimeConstant = Math.max(0.0, timeConstant);
+        reset();
+    }
+
+    /**
+     * @param windowSize 窗口点数（3 ~ 32），窗口越大越平滑、延迟越大
+     */
+    public void configureSavitzkyGolay(int windowSize) {
+        filter = AccelFilter.SAVITZKY_GOLAY;
+        window = Math.max(3, Math.min(windowSize, MAX_WINDOW));
+        reset();
+    }
+
+    public AccelFilter getFilter() {
+        return filter;
+    }
+
+    public void reset() {
+        histHead = 0;
+        histSize = 0;
+        hasLast = false;
+    }
+
+    /**
+     * 把最近一次发布的状态拷到 out 里，任何线程都可以调用
+     * @return out
+     */
+    public Snapshot read(Snapshot out) {
+        while (true) {
+            long v1 = version;
+            if ((v1 & 1) == 0) {
+                out.timestamp = pubTimestamp;
+                out.vx = pubVx;
+                out.vy = pubVy;
+                out.omega = pubOmega;
+                out.ax = pubAx;
+                out.ay = pubAy;
+                out.alpha = pubAlpha;
+                VarHandle.loadLoadFence();
+                if (version == v1) {
+                    return out;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 用一帧里程计数据更新
+     * @param timestamp 里程计时间戳（秒，SwerveDriveState.Timestamp）
+     * @param robotSpeeds 机器人坐标系速度
+     * @param heading 机器人朝向
+     */
+    public void update(double timestamp, ChassisSpeeds robotSpeeds, Rotation2d heading) {
+        double cos = heading.getCos();
+        double sin = heading.getSin();
+        update(timestamp,
+            robotSpeeds.vxMetersPerSecond * cos - robotSpeeds.vyMetersPerSecond * sin,
+            robotSpeeds.vyMetersPerSecond * cos + robotSpeeds.vxMetersPerSecond * sin,
+            robotSpeeds.omegaRadiansPerSecond);
+    }
+
+    /**
+     * 用场地坐标系速度更新
+     */
+    public void update(double timestamp, double vx, double vy, double omega) {
+        Snapshot last = buffers[front];
+        double dt = timestamp - last.timestamp;
+        if (hasLast && dt <= 0.0) {
+            return; // 没有新的里程计数据
+        }
+
+        Snapshot next = buffers[front ^ 1];
+        next.timestamp = timestamp;
+        next.vx = vx;
+        next.vy = vy;
+        next.omega = omega;
+
+        pushHistory(timestamp, vx, vy, omega);
+
+        if (!hasLast) {
+            next.ax = 0.0;
+            next.ay = 0.0;
+            next.alpha = 0.0;
+            hasLast = true;
+        } else {
+            switch (filter) {
+                case LOW_PASS: {
+                    double k = dt / (lowPassTimeConstant + dt);
+                    next.ax = last.ax + k * ((vx - last.vx) / dt - last.ax);
+                    next.ay = last.ay + k * ((vy - last.vy) / dt - last.ay);
+                    next.alpha = last.alpha + k * ((omega - last.omega) / dt - last.alpha);
+                    break;
+                }
+                case SAVITZKY_GOLAY:
+                    if (histSize >= 3 && fitDerivative(next)) {
+                        break;
+                    }
+                    // 点数不够或者拟合退化，退回差分
+                    // fall through
+                default:
+                    next.ax = (vx - last.vx) / dt;
+                    next.ay = (vy - last.vy) / dt;
+                    next.alpha = (omega - last.omega) / dt;
+                    break;
+            }
+        }
+
+        next.ax = clamp(next.ax, MAX_LINEAR_ACCEL);
+        next.ay = clamp(next.ay, MAX_LINEAR_ACCEL);
+        next.alpha = clamp(next.alpha, MAX_ANGULAR_ACCEL);
+
+        front ^= 1;
+        publish(next);
+    }
+
+    private void publish(Snapshot s) {
+        long v = version;
+        version = v + 1;
+        VarHandle.storeStoreFence();
+        pubTimestamp = s.timestamp;
+        pubVx = s.vx;
+        pubVy = s.vy;
+        pubOmega = s.omega;
+        pubAx = s.ax;
+        pubAy = s.ay;
+        pubAlpha = s.alpha;
+        version = v + 2;
+    }
+
+    private void pushHistory(double t, double vx, double vy, double omega) {
+        if (filter != AccelFilter.SAVITZKY_GOLAY) {
+            return;
+        }
+        histHead = (histHead + 1) % window;
+        histT[histHead] = t;
+        histVx[histHead] = vx;
+        histVy[histHead] = vy;
+        histOmega[histHead] = omega;
+        if (histSize < window) {
+            histSize++;
+        }
+    }
+
+    /**
+     * 对窗口内的点拟合 v = a + b*s + c*s^2（s 是相对最新点的时间），最新点处的导数就是 b。
+     * 时间间隔不均匀也能用。
+     * @return 拟合是否成功
+     */
+    private boolean fitDerivative(Snapshot out) {
+        double t0 = histT[histHead];
+        double s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double xv0 = 0, xv1 = 0, xv2 = 0;
+        double yv0 = 0, yv1 = 0, yv2 = 0;
+        double wv0 = 0, wv1 = 0, wv2 = 0;
+        for (int i = 0, idx = histHead; i < histSize; ++i, idx = (idx + window - 1) % window) {
+            double s = histT[idx] - t0;
+            double s_2 = s * s;
+            s1 += s;
+            s2 += s_2;
+            s3 += s_2 * s;
+            s4 += s_2 * s_2;
+            xv0 += histVx[idx];
+            xv1 += histVx[idx] * s;
+            xv2 += histVx[idx] * s_2;
+            yv0 += histVy[idx];
+            yv1 += histVy[idx] * s;
+            yv2 += histVy[idx] * s_2;
+            wv0 += histOmega[idx];
+            wv1 += histOmega[idx] * s;
+            wv2 += histOmega[idx] * s_2;
+        }
+        double n = histSize;
+
+        // 正规方程 [n s1 s2; s1 s2 s3; s2 s3 s4] [a b c]^T = [v0 v1 v2]^T，用克莱姆法则只解 b
+        double det = n * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+        if (Math.abs(det) < 1e-18) {
+            return false;
+        }
+        out.ax = solveB(n, s1, s2, s3, s4, xv0, xv1, xv2) / det;
+        out.ay = solveB(n, s1, s2, s3, s4, yv0, yv1, yv2) / det;
+        out.alpha = solveB(n, s1, s2, s3, s4, wv0, wv1, wv2) / det;
+        return true;
+    }
+
+    private static double solveB(double n, double s1, double s2, double s3, double s4, double v0, double v1, double v2) {
+        // 把第二列换成右端项之后的行列式
+        return n * (v1 * s4 - s3 * v2) - v0 * (s1 * s4 - s3 * s2) + s2 * (s1 * v2 - v1 * s2);
+    }
+
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+}
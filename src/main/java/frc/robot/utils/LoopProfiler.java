@@ -0,0 +1,236 @@
+package frc.robot.utils;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+
+/**
+ * 主循环分段耗时统计
+ *
+ * 使用方法：
+ * - 在需要统计的代码段前后调用 start(section) / end(section)，允许嵌套
+ * - 在 robotPeriodic 的最后调用 endLoop()
+ *
+ * 每段耗时按纳秒记录，落入预先分配好的直方图（long数组），运行中不产生任何垃圾。
+ * 每秒向 NetworkTables 的 /LoopProfiler 发布一次 [min, max, p50, p99, mean, 超时次数]（毫秒）。
+ * 一帧超过 20ms 时，超时归到这一帧里“自身耗时”（扣掉嵌套子段）最长的那一段。
+ */
+public final class LoopProfiler {
+    // --- 分段ID ---
+    public static final int SCHEDULER = 0;              // CommandScheduler.run()
+    public static final int DRIVETRAIN = 1;             // CommandSwerveDrivetrain.periodic
+    public static final int LIMELIGHT = 2;              // LimelightModule.update
+    public static final int TURRENT = 3;                // TurrentSubsystem.periodic
+    public static final int INTAKE = 4;                 // IntakeSubsystem.periodic
+    public static final int CONTAINER_UPDATE = 5;       // RobotContainer.update
+    public static final int CONTAINER_UPDATE_ALWAYS = 6; // RobotContainer.updateAlways
+
+    private static final String[] SECTION_NAMES = new String[] {
+        "Scheduler",
+        "Drivetrain",
+        "Limelight",
+        "Turrent",
+        "Intake",
+        "ContainerUpdate",
+        "ContainerUpdateAlways",
+    };
+    private static final int SECTION_COUNT = SECTION_NAMES.length;
+
+    private static final long LOOP_BUDGET_NS = 20_000_000L;     // TimedRobot 默认 20ms
+    private static final long PUBLISH_PERIOD_NS = 1_000_000_000L;
+    private static final long BUCKET_WIDTH_NS = 50_000L;       // 直方图每格 0.05ms
+    private static final int BUCKET_COUNT = 801;                // 0 ~ 40ms，最后一格收纳所有更大的值
+    private static final int MAX_DEPTH = 8;
+
+    private static boolean enabled = true;
+
+    // 每段当前这一帧的数据
+    private static final long[] startNs = new long[SECTION_COUNT];
+    private static final long[] childNs = new long[SECTION_COUNT];
+    private static final long[] frameSelfNs = new long[SECTION_COUNT];
+
+    // 每段在一个发布周期内的统计
+    private static final long[][] histogram = new long[SECTION_COUNT][BUCKET_COUNT];
+    private static final long[] sampleCount = new long[SECTION_COUNT];
+    private static final long[] sumNs = new long[SECTION_COUNT];
+    private static final long[] minNs = new long[SECTION_COUNT];
+    private static final long[] maxNs = new long[SECTION_COUNT];
+    private static final long[] overrunCount = new long[SECTION_COUNT];
+
+    // 嵌套调用栈
+    private static final int[] stack = new int[MAX_DEPTH];
+    private static int depth = 0;
+
+    private static long frameStartNs = -1;
+    private static long lastPublishNs = System.nanoTime();
+    private static long totalOverruns = 0;
+    private static long worstFrameNs = 0;
+
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+    private static final DoubleArrayPublisher[] sectionPublishers = new DoubleArrayPublisher[SECTION_COUNT];
+    private static final IntegerPublisher totalOverrunPublisher = table.getIntegerTopic("TotalOverruns").publish();
+    private static final DoubleArrayPublisher framePublisher = table.getDoubleArrayTopic("Frame").publish();
+    private static final StringPublisher culpritPublisher = table.getStringTopic("LastOverrunSection").publish();
+    private static final double[] publishBuffer = new double[6];
+    private static final double[] frameBuffer = new double[2];
+
+    static {
+        for (int i = 0; i < SECTION_COUNT; ++i) {
+            sectionPublishers[i] = table.getDoubleArrayTopic(SECTION_NAMES[i]).publish();
+        }
+        resetWindow();
+    }
+
+    public static void setEnabled(boolean isOn) {
+        enabled = isOn;
+    }
+
+    /**
+     * 开始统计一段代码
+     * @param section 分段ID
+     */
+    public static void start(int section) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (frameStartNs < 0) {
+            frameStartNs = now;
+        }
+        if (depth < MAX_DEPTH) {
+            stack[depth++] = section;
+        }
+        startNs[section] = now;
+        childNs[section] = 0;
+    }
+
+    /**
+     * 结束统计一段代码，必须和 start 成对调用
+     * @param section 分段ID
+     */
+    public static void end(int section) {
+        if (!enabled) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNs[section];
+
+        // 出栈，并把自己的耗时记到父段的“子段耗时”里
+        if (depth > 0 && stack[depth - 1] == section) {
+            depth--;
+            if (depth > 0) {
+                childNs[stack[depth - 1]] += elapsed;
+            }
+        }
+        frameSelfNs[section] += elapsed - childNs[section];
+
+        int bucket = (int) Math.min(elapsed / BUCKET_WIDTH_NS, BUCKET_COUNT - 1);
+        histogram[section][bucket]++;
+        sampleCount[section]++;
+        sumNs[section] += elapsed;
+        if (elapsed < minNs[section]) {
+            minNs[section] = elapsed;
+        }
+        if (elapsed > maxNs[section]) {
+            maxNs[section] = elapsed;
+        }
+    }
+
+    /**
+     * 一帧结束时调用（robotPeriodic 的最后）
+     */
+    public static void endLoop() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (frameStartNs >= 0) {
+            long frameNs = now - frameStartNs;
+            if (frameNs > worstFrameNs) {
+                worstFrameNs = frameNs;
+            }
+            if (frameNs > LOOP_BUDGET_NS) {
+                onOverrun(frameNs);
+            }
+        }
+        for (int i = 0; i < SECTION_COUNT; ++i) {
+            frameSelfNs[i] = 0;
+        }
+        depth = 0;
+        frameStartNs = -1;
+
+        if (now - lastPublishNs >= PUBLISH_PERIOD_NS) {
+            publish();
+            resetWindow();
+            lastPublishNs = now;
+        }
+    }
+
+    private static void onOverrun(long frameNs) {
+        int culprit = 0;
+        for (int i = 1; i < SECTION_COUNT; ++i) {
+            if (frameSelfNs[i] > frameSelfNs[culprit]) {
+                culprit = i;
+            }
+        }
+        overrunCount[culprit]++;
+        totalOverruns++;
+        culpritPublisher.set(SECTION_NAMES[culprit]);
+    }
+
+    private static void publish() {
+        for (int i = 0; i < SECTION_COUNT; ++i) {
+            long n = sampleCount[i];
+            if (n == 0) {
+                continue;
+            }
+            publishBuffer[0] = nsToMs(minNs[i]);
+            publishBuffer[1] = nsToMs(maxNs[i]);
+            publishBuffer[2] = nsToMs(percentile(i, 0.50));
+            publishBuffer[3] = nsToMs(percentile(i, 0.99));
+            publishBuffer[4] = nsToMs(sumNs[i] / n);
+            publishBuffer[5] = overrunCount[i];
+            sectionPublishers[i].set(publishBuffer);
+        }
+        frameBuffer[0] = nsToMs(worstFrameNs);
+        frameBuffer[1] = nsToMs(LOOP_BUDGET_NS);
+        framePublisher.set(frameBuffer);
+        totalOverrunPublisher.set(totalOverruns);
+    }
+
+    /**
+     * 从直方图估算百分位，返回所在格子的上沿（纳秒）
+     */
+    private static long percentile(int section, double p) {
+        long[] h = histogram[section];
+        long target = (long) Math.ceil(sampleCount[section] * p);
+        long cumulative = 0;
+        for (int b = 0; b < BUCKET_COUNT; ++b) {
+            cumulative += h[b];
+            if (cumulative >= target) {
+                // 最后一格没有上沿，用实际最大值代替
+                return b == BUCKET_COUNT - 1 ? maxNs[section] : Math.min((b + 1) * BUCKET_WIDTH_NS, maxNs[section]);
+            }
+        }
+        return maxNs[section];
+    }
+
+    private static void resetWindow() {
+        for (int i = 0; i < SECTION_COUNT; ++i) {
+            long[] h = histogram[i];
+            for (int b = 0; b < BUCKET_COUNT; ++b) {
+                h[b] = 0;
+            }
+            sampleCount[i] = 0;
+            sumNs[i] = 0;
+            minNs[i] = Long.MAX_VALUE;
+            maxNs[i] = 0;
+        }
+        worstFrameNs = 0;
+    }
+
+    private static double nsToMs(long ns) {
+        return ns / 1e6;
+    }
+}
@@ -0,0 +1,172 @@
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.ctre.phoenix6.Utils;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.sim.ChassisReference;
+import com.ctre.phoenix6.sim.TalonFXSimState;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+
+/**
+ * 非底盘机构的物理仿真（炮台、飞轮、供弹、intake 伸缩）
+ *
+ * 每个机构读 TalonFXSimState 的输出电压，喂给 WPILib 的 DCMotorSim / FlywheelSim，
+ * 再把算出来的转子位置、速度写回 TalonFXSimState，这样控制代码（MotionMagic、速度闭环）在电脑上也能跑出响应。
+ * 所有机构在一个 5ms 的 Notifier 里一起更新，和 CommandSwerveDrivetrain.startSimThread 一样用实际的 dt。
+ *
+ * 用法：在子系统构造函数里
+ *   if (Utils.isSimulation()) MechanismSim.add(MechanismSim.dcMotor(...));
+ * 不是仿真时不会创建任何东西。
+ */
+public class MechanismSim {
+    private static final double kSimLoopPeriod = 0.005; // 5 ms
+
+    private static final ArrayList<MechanismSim> s_mechanisms = new ArrayList<>();
+    private static Notifier s_notifier = null;
+    private static double s_lastTime;
+
+    private final String m_name;
+    private TalonFXSimState[] m_states;
+    private double[] m_signs;
+    private final DCMotorSim m_dcMotorSim;
+    private final FlywheelSim m_flywheelSim;
+    private final double m_gearing;
+    private double m_minPosition = Double.NEGATIVE_INFINITY;
+    private double m_maxPosition = Double.POSITIVE_INFINITY;
+    private double m_flywheelPosition = 0; // FlywheelSim 不算位置，自己积分（机构圈数）
+
+    private MechanismSim(String name, TalonFX motor, ChassisReference orientation,
+                         DCMotorSim dcMotorSim, FlywheelSim flywheelSim, double gearing) {
+        m_name = name;
+        m_states = new TalonFXSimState[] { motor.getSimState() };
+        m_signs = new double[] { 1.0 };
+        m_states[0].Orientation = orientation;
+        m_dcMotorSim = dcMotorSim;
+        m_flywheelSim = flywheelSim;
+        m_gearing = gearing;
+    }
+
+    /**
+     * 有位置的机构（炮台、伸缩臂、供弹）
+     * @param orientation 和电机配置的 Inverted 保持一致
+     * @param moi 机构端的转动惯量（kg*m^2）
+     * @param gearing 减速比（转子圈数 / 机构圈数）
+     */
+    public static MechanismSim dcMotor(String name, TalonFX motor, ChassisReference orientation,
+                                       DCMotor gearbox, double moi, double gearing) {
+        DCMotorSim sim = new DCMotorSim(LinearSystemId.createDCMotorSystem(gearbox, moi, gearing), gearbox);
+        return new MechanismSim(name, motor, orientation, sim, null, gearing);
+    }
+
+    /**
+     * 只关心速度的机构（射击飞轮）
+     */
+    public static MechanismSim flywheel(String name, TalonFX motor, ChassisReference orientation,
+                                        DCMotor gearbox, double moi, double gearing) {
+        FlywheelSim sim = new FlywheelSim(LinearSystemId.createFlywheelSystem(gearbox, moi, gearing), gearbox);
+        return new MechanismSim(name, motor, orientation, null, sim, gearing);
+    }
+
+    /**
+     * 跟随电机：电压只取主电机的，跟随电机只同步位置和速度
+     * @param opposed 和主电机反向（Follower 用 MotorAlignmentValue.Opposed 时）
+     */
+    public MechanismSim withFollower(TalonFX follower, ChassisReference orientation, boolean opposed) {
+        TalonFXSimState state = follower.getSimState();
+        state.Orientation = orientation;
+        int n = m_states.length;
+        m_states = Arrays.copyOf(m_states, n + 1);
+        m_signs = Arrays.copyOf(m_signs, n + 1);
+        m_states[n] = state;
+        m_signs[n] = opposed ? -1.0 : 1.0;
+        return this;
+    }
+
+    /**
+     * 机械限位（转子圈数），撞上之后速度清零
+     */
+    public MechanismSim withHardStops(double minRotorPosition, double maxRotorPosition) {
+        m_minPosition = minRotorPosition / m_gearing;
+        m_maxPosition = maxRotorPosition / m_gearing;
+        return this;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * 注册并确保仿真线程已经启动
+     */
+    public static synchronized void add(MechanismSim mechanism) {
+        s_mechanisms.add(mechanism);
+        if (s_notifier == null) {
+            s_lastTime = Utils.getCurrentTimeSeconds();
+            s_notifier = new Notifier(MechanismSim::updateAll);
+            s_notifier.setName("MechanismSim");
+            s_notifier.startPeriodic(kSimLoopPeriod);
+        }
+    }
+
+    private static synchronized void updateAll() {
+        double now = Utils.getCurrentTimeSeconds();
+        double dt = now - s_lastTime;
+        s_lastTime = now;
+        if (dt <= 0) {
+            return;
+        }
+        double battery = RobotController.getBatteryVoltage();
+        for (MechanismSim mechanism : s_mechanisms) {
+            mechanism.update(dt, battery);
+        }
+    }
+
+    /**
+     * 推进一步，也可以在不开 Notifier 的场合（比如无界面的快速仿真）直接调用
+     */
+    public void update(double dt, double batteryVoltage) {
+        for (TalonFXSimState state : m_states) {
+            state.setSupplyVoltage(batteryVoltage);
+        }
+        double voltage = m_states[0].getMotorVoltage();
+
+        double position;    // 机构圈数
+        double velocity;    // 机构圈/秒
+        double acceleration;
+        if (m_dcMotorSim != null) {
+            m_dcMotorSim.setInputVoltage(voltage);
+            m_dcMotorSim.update(dt);
+            position = m_dcMotorSim.getAngularPositionRotations();
+            velocity = m_dcMotorSim.getAngularVelocityRadPerSec() / (2 * Math.PI);
+            acceleration = m_dcMotorSim.getAngularAccelerationRadPerSecSq() / (2 * Math.PI);
+            if (position < m_minPosition || position > m_maxPosition) {
+                position = Math.max(m_minPosition, Math.min(m_maxPosition, position));
+                velocity = 0;
+                acceleration = 0;
+                m_dcMotorSim.setState(position * 2 * Math.PI, 0);
+            }
+        } else {
+            m_flywheelSim.setInputVoltage(voltage);
+            m_flywheelSim.update(dt);
+            velocity = m_flywheelSim.getAngularVelocityRadPerSec() / (2 * Math.PI);
+            acceleration = m_flywheelSim.getAngularAccelerationRadPerSecSq() / (2 * Math.PI);
+            m_flywheelPosition += velocity * dt;
+            position = m_flywheelPosition;
+        }
+
+        for (int i = 0; i < m_states.length; i++) {
+            double sign = m_signs[i];
+            m_states[i].setRawRotorPosition(sign * position * m_gearing);
+            m_states[i].setRotorVelocity(sign * velocity * m_gearing);
+            m_states[i].setRotorAcceleration(sign * acceleration * m_gearing);
+        }
+    }
+}
@@ -7,20 +7,71 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.RobotController;
 
 /**
  * FRC机器人消息发送类
  * 提供8个不同类别的日志输出方法
+ *
+ * 日志调用只把消息编码进预先分配好的环形缓冲区（无锁、不分配内存），
+ * 真正的 UDP 发送和控制台回显都在后台线程里完成，多条消息会被合并进同一个数据包。
+ * 缓冲区满时直接丢弃新消息并计数，不会阻塞调用者。
+ *
+ * 默认使用二进制帧格式（大端序），一个数据包里可以连续放多帧：
+ * <pre>
+ * | magic 0xA5 (1) | 类别 (1) | 序号 (4) | FPGA时间戳 微秒 (8) | 正文长度 (2) | 正文 UTF-8 |
+ * </pre>
+ * 序号就是消息在环形缓冲区里的全局下标，和发送顺序严格一致，控制台按序号的空缺发现 UDP 丢包；
+ * 缓冲区满时被丢掉的消息不占序号，由后台线程单独报告累计丢弃数。
+ * 调用 setBinaryMode(false) 可以退回到旧的 "&lt;--N--&gt;正文" 文本格式，多条消息之间用 \0 分隔。
  */
 public class MessageSender {
-    
+
     private static DatagramSocket socket;
     private static InetAddress broadcastAddress;
     private static final int DEFAULT_UDP_PORT = 5805; // 端口号提取成常数
     private static int udpPort = DEFAULT_UDP_PORT;
     private static boolean initialized = false;
     private static PrintStream originalErr;
-    
+
+    // --- 环形缓冲区 ---
+    private static final int SLOT_COUNT = 256;              // 必须是2的幂
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int SLOT_SIZE = 1280;              // 每条消息最多字节数（含帧头），超长截断；要能装下一整段异常堆栈
+    private static final int MAX_DATAGRAM_SIZE = 1400;      // 保证一个包不超过以太网 MTU
+    private static final byte MESSAGE_SEPARATOR = 0;        // 同一个包里多条消息之间的分隔符
+    private static final long IDLE_PARK_NS = 2_000_000L;    // 队列为空时后台线程休眠 2ms
+
+    // --- 二进制帧 ---
+    private static final byte FRAME_MAGIC = (byte) 0xA5;
+    private static final int FRAME_HEADER_SIZE = 16;
+    private static final int TEXT_PREFIX_SIZE = 7;          // "<--N-->"
+    private static volatile boolean binaryMode = true;
+
+    private static final byte[] slotData = new byte[SLOT_COUNT * SLOT_SIZE];
+    private static final int[] slotLength = new int[SLOT_COUNT];
+    private static final boolean[] slotIsBinary = new boolean[SLOT_COUNT];
+    private static final boolean[] slotEcho = new boolean[SLOT_COUNT];   // 是否回显到控制台
+    // 每个槽位的序号，用于生产者/消费者之间的同步（Vyukov 有界队列）
+    private static final AtomicLongArray slotSequence = new AtomicLongArray(SLOT_COUNT);
+    private static final AtomicLong producerIndex = new AtomicLong(0);
+    private static long consumerIndex = 0;                  // 只有后台线程访问
+    private static final AtomicLong droppedCount = new AtomicLong(0);
+
+    private static Thread senderThread;
+    private static UDPOutputStream errCapture;
+
+    static {
+        for (int i = 0; i < SLOT_COUNT; ++i) {
+            slotSequence.set(i, i);
+        }
+    }
+
     /**
      * 初始化消息发送系统
      * @param port UDP端口号
@@ -29,17 +80,23 @@ public class MessageSender {
         if (initialized) {
             return;
         }
-        
+
         try {
             udpPort = port;
             socket = new DatagramSocket();
             socket.setBroadcast(true); // 启用广播
             broadcastAddress = InetAddress.getByName("255.255.255.255"); // 广播地址
             originalErr = System.err; // 保存原始的错误流
-            
+
             // 重定向System.err来捕获所有异常
-            System.setErr(new PrintStream(new UDPOutputStream(originalErr)));
-            
+            errCapture = new UDPOutputStream(originalErr);
+            System.setErr(new PrintStream(errCapture));
+
+            senderThread = new Thread(MessageSender::senderLoop, "MessageSender");
+            senderThread.setDaemon(true);
+            senderThread.setPriority(Thread.MIN_PRIORITY);
+            senderThread.start();
+
             initialized = true;
 
             log0("---------------------------- 重新开始 这是分割线 ----------------------------");
@@ -49,95 +106,350 @@ public class MessageSender {
             System.err.println("Failed to initialize MessageSender: " + e.getMessage());
         }
     }
-    
+
     /**
      * 初始化消息发送系统，使用默认端口
      */
     public static void init() {
         init(DEFAULT_UDP_PORT);
     }
-    
+
+    /**
+     * 切换发送格式
+     * @param isOn true 使用二进制帧，false 使用旧的文本前缀格式
+     */
+    public static void setBinaryMode(boolean isOn) {
+        binaryMode = isOn;
+    }
+
+    /**
+     * 获取因缓冲区满而被丢弃的消息数
+     */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
     /**
-     * 内部方法：发送UDP消息
+     * 内部方法：把消息放进环形缓冲区，由后台线程发送
      */
-    private static void sendUdpMessage(String message) {
+    private static void sendUdpMessage(int categoryId, String message) {
         if (!initialized) {
             System.err.println("MessageSender not initialized. Call init() first.");
             return;
         }
-        
+
+        long timestamp = RobotController.getFPGATime();
+        boolean binary = binaryMode;
+
+        // 序号取抢到的槽位下标，多个线程同时写时序号顺序和缓冲区顺序也一致
+        long index = claimSlot();
+        if (index < 0) {
+            return;
+        }
+        int seq = (int) index;
+        int slot = (int) (index & SLOT_MASK);
+        int offset = slot * SLOT_SIZE;
+        int payloadStart = offset + writeHeader(categoryId, seq, timestamp, binary, slotData, offset);
+        int payloadEnd = encodeUtf8(message, slotData, payloadStart, offset + SLOT_SIZE);
+        publishSlot(index, binary, true, payloadStart, payloadEnd);
+    }
+
+    /**
+     * 内部方法：直接把已经是 UTF-8 的字节放进环形缓冲区（给 System.err 捕获用）。
+     * 原始 System.err 上已经有完整的一份了，后台线程不再回显
+     */
+    private static void sendUdpMessage(int categoryId, byte[] src, int off, int len) {
+        if (!initialized) {
+            return;
+        }
+
+        long timestamp = RobotController.getFPGATime();
+        boolean binary = binaryMode;
+
+        long index = claimSlot();
+        if (index < 0) {
+            return;
+        }
+        int seq = (int) index;
+        int slot = (int) (index & SLOT_MASK);
+        int offset = slot * SLOT_SIZE;
+        int payloadStart = offset + writeHeader(categoryId, seq, timestamp, binary, slotData, offset);
+        int copyLen = utf8Boundary(src, off, Math.min(len, offset + SLOT_SIZE - payloadStart));
+        System.arraycopy(src, off, slotData, payloadStart, copyLen);
+        publishSlot(index, binary, false, payloadStart, payloadStart + copyLen);
+    }
+
+    /**
+     * 抢占一个空槽位
+     * @return 槽位的全局序号，缓冲区已满时返回 -1
+     */
+    private static long claimSlot() {
+        while (true) {
+            long index = producerIndex.get();
+            int slot = (int) (index & SLOT_MASK);
+            long slotSeq = slotSequence.get(slot);
+            if (slotSeq == index) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    return index;
+                }
+            }
+            else if (slotSeq < index) {
+                // 缓冲区已满：丢弃，不阻塞
+                droppedCount.incrementAndGet();
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 补上帧长度并把槽位交给后台线程
+     */
+    private static void publishSlot(long index, boolean binary, boolean echo, int payloadStart, int payloadEnd) {
+        int slot = (int) (index & SLOT_MASK);
+        int offset = slot * SLOT_SIZE;
+        if (binary) {
+            int payloadLen = payloadEnd - payloadStart;
+            slotData[payloadStart - 2] = (byte) (payloadLen >>> 8);
+            slotData[payloadStart - 1] = (byte) payloadLen;
+        }
+        slotIsBinary[slot] = binary;
+        slotEcho[slot] = echo;
+        slotLength[slot] = payloadEnd - offset;
+        slotSequence.set(slot, index + 1); // 发布给消费者
+    }
+
+    /**
+     * 写入二进制帧头（长度字段由 publishSlot 补上）或 "<--N-->" 文本前缀
+     * @return 头部字节数
+     */
+    private static int writeHeader(int categoryId, int seq, long timestamp, boolean binary, byte[] dst, int offset) {
+        int pos = offset;
+        if (!binary) {
+            dst[pos++] = '<';
+            dst[pos++] = '-';
+            dst[pos++] = '-';
+            dst[pos++] = (byte) ('0' + categoryId);
+            dst[pos++] = '-';
+            dst[pos++] = '-';
+            dst[pos++] = '>';
+            return TEXT_PREFIX_SIZE;
+        }
+        dst[pos++] = FRAME_MAGIC;
+        dst[pos++] = (byte) categoryId;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            dst[pos++] = (byte) (seq >>> shift);
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            dst[pos++] = (byte) (timestamp >>> shift);
+        }
+        return FRAME_HEADER_SIZE;
+    }
+
+    /**
+     * 截断 UTF-8 字节串时退回到字符边界，避免截出半个汉字
+     * @return 不超过 len 的安全长度
+     */
+    private static int utf8Boundary(byte[] src, int off, int len) {
+        if (len <= 0) {
+            return 0;
+        }
+        int cut = len;
+        // 如果截断点正好落在一个多字节字符的中间，往前退到这个字符的起始字节
+        while (cut > 0 && (src[off + cut - 1] & 0xC0) == 0x80) {
+            cut--;
+        }
+        if (cut > 0 && (src[off + cut - 1] & 0x80) != 0) {
+            int lead = src[off + cut - 1] & 0xFF;
+            int charLen = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+            if (cut - 1 + charLen <= len) {
+                return len; // 最后一个字符是完整的
+            }
+            return cut - 1;
+        }
+        return len;
+    }
+
+    /**
+     * 手写的 UTF-8 编码，空间不够时在字符边界截断
+     * @return 写入结束后的位置
+     */
+    private static int encodeUtf8(String s, byte[] dst, int pos, int end) {
+        int len = s.length();
+        for (int i = 0; i < len; ++i) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (pos + 1 > end) break;
+                dst[pos++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                if (pos + 2 > end) break;
+                dst[pos++] = (byte) (0xC0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (pos + 4 > end) break;
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst[pos++] = (byte) (0xF0 | (cp >> 18));
+                dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else {
+                if (pos + 3 > end) break;
+                dst[pos++] = (byte) (0xE0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 后台线程：取出缓冲区中的消息，合并成尽量大的数据包发送
+     */
+    private static void senderLoop() {
+        byte[] datagram = new byte[MAX_DATAGRAM_SIZE];
+        DatagramPacket packet = new DatagramPacket(datagram, 0, broadcastAddress, udpPort);
+        long reportedDropped = 0;
+
+        while (true) {
+            int length = 0;
+            boolean batchIsBinary = false;
+            while (true) {
+                int slot = (int) (consumerIndex & SLOT_MASK);
+                if (slotSequence.get(slot) != consumerIndex + 1) {
+                    break; // 没有新消息
+                }
+                int start = slot * SLOT_SIZE;
+                int msgLen = slotLength[slot];
+                boolean isBinary = slotIsBinary[slot];
+                if (length > 0 && isBinary != batchIsBinary) {
+                    break; // 两种格式不混在同一个包里
+                }
+                // 二进制帧自带长度，不需要分隔符
+                int needed = (length > 0 && !isBinary ? 1 : 0) + msgLen;
+                if (length + needed > MAX_DATAGRAM_SIZE) {
+                    break; // 当前包已满，先发出去
+                }
+                if (length > 0 && !isBinary) {
+                    datagram[length++] = MESSAGE_SEPARATOR;
+                }
+                System.arraycopy(slotData, start, datagram, length, msgLen);
+                batchIsBinary = isBinary;
+                length += msgLen;
+
+                // 控制台回显，两种格式都输出成 "<--N-->正文"
+                if (slotEcho[slot]) {
+                    if (isBinary) {
+                        echoTextPrefix(slotData[start + 1]);
+                        System.out.write(slotData, start + FRAME_HEADER_SIZE, msgLen - FRAME_HEADER_SIZE);
+                    }
+                    else {
+                        System.out.write(slotData, start, msgLen);
+                    }
+                    System.out.write('\n');
+                }
+
+                slotSequence.set(slot, consumerIndex + SLOT_COUNT); // 归还槽位
+                consumerIndex++;
+            }
+
+            if (length > 0) {
+                System.out.flush();
+                send(packet, length);
+                continue;
+            }
+
+            // 把等得太久的异常堆栈发出去
+            errCapture.flushIfStale(System.nanoTime());
+
+            long dropped = droppedCount.get();
+            if (dropped != reportedDropped) {
+                reportedDropped = dropped;
+                logWarning("[MessageSender] 缓冲区已满，累计丢弃 " + dropped + " 条消息");
+            }
+            LockSupport.parkNanos(IDLE_PARK_NS);
+        }
+    }
+
+    private static final byte[] echoPrefix = new byte[] {'<', '-', '-', '0', '-', '-', '>'};
+
+    private static void echoTextPrefix(int categoryId) {
+        echoPrefix[3] = (byte) ('0' + categoryId);
+        System.out.write(echoPrefix, 0, TEXT_PREFIX_SIZE);
+    }
+
+    private static void send(DatagramPacket packet, int length) {
         try {
-            byte[] buffer = message.getBytes("UTF-8");
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length, broadcastAddress, udpPort);
+            packet.setLength(length);
             socket.send(packet);
-            System.out.println(message);
         } catch (IOException e) {
             originalErr.println("Failed to send UDP message: " + e.getMessage());
         }
     }
-    
+
     /**
      * 发送默认类别消息 (ID: 0)
      * @param message 要发送的消息内容
      */
     public static void log0(String message) {
-        sendUdpMessage("<--0-->" + message);
+        sendUdpMessage(0, message);
     }
-    
+
     /**
      * 发送信息类别消息 (ID: 1)
      * @param message 要发送的消息内容
      */
     public static void log1(String message) {
-        sendUdpMessage("<--1-->" + message);
+        sendUdpMessage(1, message);
     }
-    
+
     /**
      * 发送警告类别消息 (ID: 2)
      * @param message 要发送的消息内容
      */
     public static void log2(String message) {
-        sendUdpMessage("<--2-->" + message);
+        sendUdpMessage(2, message);
     }
-    
+
     /**
      * 发送错误类别消息 (ID: 3)
      * @param message 要发送的消息内容
      */
     public static void log3(String message) {
-        sendUdpMessage("<--3-->" + message);
+        sendUdpMessage(3, message);
     }
-    
+
     /**
      * 发送调试类别消息 (ID: 4)
      * @param message 要发送的消息内容
      */
     public static void log4(String message) {
-        sendUdpMessage("<--4-->" + message);
+        sendUdpMessage(4, message);
     }
-    
+
     /**
      * 发送特殊类别消息 (ID: 5)
      * @param message 要发送的消息内容
      */
     public static void log5(String message) {
-        sendUdpMessage("<--5-->" + message);
+        sendUdpMessage(5, message);
     }
-    
+
     /**
      * 发送事件类别消息 (ID: 6)
      * @param message 要发送的消息内容
      */
     public static void log6(String message) {
-        sendUdpMessage("<--6-->" + message);
+        sendUdpMessage(6, message);
     }
-    
+
     /**
      * 发送状态类别消息 (ID: 7)
      * @param message 要发送的消息内容
      */
     public static void log7(String message) {
-        sendUdpMessage("<--7-->" + message);
+        sendUdpMessage(7, message);
     }
 
     public static void logException(String message) {
@@ -154,7 +466,7 @@ public class MessageSender {
     public static void logWarning(String message) {
         log2(message);
     }
-    
+
     // /**
     //  * 通用日志方法，允许指定类别ID
     //  * @param categoryId 类别ID (0-7)
@@ -168,58 +480,147 @@ public class MessageSender {
     //         sendUdpMessage("<--0-->" + "[INVALID CATEGORY ID: " + categoryId + "] " + message);
     //     }
     // }
-    
+
     /**
      * 用于捕获系统异常的输出流
+     *
+     * 按字节拼行，不做任何字符串转换；以空白或 "Caused by:" 开头的行被认为是上一行的延续，
+     * 整段异常堆栈会合并成一条消息交给后台线程。为了防止同一个异常每帧刷屏，
+     * 每秒最多发送 ERR_MESSAGES_PER_SECOND 条，超出的只计数。
+     * 截断和限流只作用于 UDP 这一份；所有字节同时原样写回原始 System.err，完整、不限流，
+     * 机器人崩溃前最后的堆栈也不会因为还在缓冲区里而丢掉。
      */
     private static class UDPOutputStream extends java.io.OutputStream {
+        private static final int ERR_MESSAGES_PER_SECOND = 10;
+        private static final long STALE_NS = 20_000_000L;      // 20ms 内没有新的延续行，就认为堆栈结束了
+
+        private final byte[] line = new byte[SLOT_SIZE];
+        private int lineLength = 0;
+        private final byte[] pending = new byte[SLOT_SIZE];
+        private int pendingLength = 0;
+        private long pendingSinceNs = 0;
+
+        private double tokens = ERR_MESSAGES_PER_SECOND;
+        private long lastRefillNs = System.nanoTime();
+        private long suppressedCount = 0;
+
         private final PrintStream originalStream;
-        private final StringBuilder buffer = new StringBuilder();
-        
-        public UDPOutputStream(PrintStream originalStream) {
+
+        UDPOutputStream(PrintStream originalStream) {
             this.originalStream = originalStream;
         }
-        
+
         @Override
-        public void write(int b) throws IOException {
-            char c = (char) b;
-            buffer.append(c);
-            
-            // 如果遇到换行符，发送整行
-            if (c == '\n') {
-                String line = buffer.toString();
-                
-                // 原始输出
-                originalStream.print(line);
-                
-                // 发送到UDP
-                logException(line.trim());
-                buffer.setLength(0); // 清空缓冲区
-            }
-        }
-        
+        public synchronized void write(int b) {
+            originalStream.write(b);
+            if (b == '\n') {
+                endLine();
+            }
+            else if (lineLength < line.length) {
+                line[lineLength++] = (byte) b;
+            }
+        }
+
         @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            String str = new String(b, off, len, "UTF-8");
-            
-            // 按行处理字符串
-            String[] lines = str.split("\n", -1);
-            for (int i = 0; i < lines.length; i++) {
-                buffer.append(lines[i]);
-                
-                // 如果不是最后一行（意味着原字符串以\n结尾），则发送整行
-                if (i < lines.length - 1 || str.endsWith("\n")) {
-                    String line = buffer.toString();
-                    
-                    // 原始输出
-                    originalStream.print(line + (i < lines.length - 1 ? "\n" : ""));
-                    
-                    // 发送到UDP
-                    logException(line.trim());
-                    
-                    buffer.setLength(0); // 清空缓冲区
+        public synchronized void write(byte[] b, int off, int len) {
+            originalStream.write(b, off, len);
+            int end = off + len;
+            for (int i = off; i < end; ++i) {
+                byte c = b[i];
+                if (c == '\n') {
+                    endLine();
+                }
+                else if (lineLength < line.length) {
+                    line[lineLength++] = c;
                 }
             }
         }
+
+        @Override
+        public synchronized void flush() {
+            originalStream.flush();
+            flushPending();
+        }
+
+        /**
+         * 由后台线程调用，堆栈已经有一段时间没有新的行了就发出去
+         */
+        synchronized void flushIfStale(long nowNs) {
+            if (pendingLength > 0 && nowNs - pendingSinceNs > STALE_NS) {
+                flushPending();
+            }
+        }
+
+        private void endLine() {
+            int len = lineLength;
+            lineLength = 0;
+            if (len > 0 && line[len - 1] == '\r') {
+                len--;
+            }
+            if (len == 0) {
+                return;
+            }
+
+            if (pendingLength > 0 && isContinuation(line, len)) {
+                // 合并到当前这段堆栈里，装不下就丢弃多出来的行
+                if (pendingLength + 1 + len <= pending.length) {
+                    pending[pendingLength++] = '\n';
+                    System.arraycopy(line, 0, pending, pendingLength, len);
+                    pendingLength += len;
+                }
+                return;
+            }
+
+            flushPending();
+            System.arraycopy(line, 0, pending, 0, len);
+            pendingLength = len;
+            pendingSinceNs = System.nanoTime();
+        }
+
+        private static boolean isContinuation(byte[] b, int len) {
+            if (b[0] == '\t' || b[0] == ' ') {
+                return true;
+            }
+            return startsWith(b, len, CAUSED_BY) || startsWith(b, len, SUPPRESSED);
+        }
+
+        private static final byte[] CAUSED_BY = "Caused by:".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] SUPPRESSED = "Suppressed:".getBytes(StandardCharsets.US_ASCII);
+
+        private static boolean startsWith(byte[] b, int len, byte[] prefix) {
+            if (len < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; ++i) {
+                if (b[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void flushPending() {
+            if (pendingLength == 0) {
+                return;
+            }
+            int len = pendingLength;
+            pendingLength = 0;
+
+            // 令牌桶限流
+            long now = System.nanoTime();
+            tokens = Math.min(ERR_MESSAGES_PER_SECOND, tokens + (now - lastRefillNs) * 1e-9 * ERR_MESSAGES_PER_SECOND);
+            lastRefillNs = now;
+            if (tokens < 1) {
+                suppressedCount++;
+                return;
+            }
+            tokens -= 1;
+
+            if (suppressedCount > 0) {
+                logWarning("[System.err] 刷屏过快，已抑制 " + suppressedCount + " 条");
+                suppressedCount = 0;
+            }
+            sendUdpMessage(3, pending, 0, len);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package frc.robot.utils;
+
+/**
+ * 单写者的 (时间戳, 值) 采样缓冲区，数据按块存放在 double[] 里，不装箱
+ *
+ * - 只允许一个线程调用 add()（比如 Notifier 线程），其它线程可以随时调用 size() / snapshot() 读取
+ * - 块满了才分配新块（每块 CHUNK_SIZE 个点），已有的块永远不会移动或复制
+ * - snapshot() 不复制数据，返回的视图只能看到调用那一刻已经写好的点
+ */
+public class SampleBuffer {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;     // 每块 4096 个点，100Hz 约 40 秒
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // 块目录，只会被整体替换（扩容时），所以读者拿到的永远是一个完整的目录
+    private volatile double[][] timestampChunks;
+    private volatile double[][] valueChunks;
+    private int chunkCount;
+
+    // 已经写好的点数，写者在写完数据之后才更新
+    private volatile int size = 0;
+
+    public SampleBuffer() {
+        this(1);
+    }
+
+    /**
+     * @param initialChunks 预先分配的块数，按预计的记录时长给，避免记录过程中分配内存
+     */
+    public SampleBuffer(int initialChunks) {
+        int n = Math.max(1, initialChunks);
+        double[][] ts = new double[Math.max(8, n)][];
+        double[][] vs = new double[ts.length][];
+        for (int i = 0; i < n; ++i) {
+            ts[i] = new double[CHUNK_SIZE];
+            vs[i] = new double[CHUNK_SIZE];
+        }
+        chunkCount = n;
+        timestampChunks = ts;
+        valueChunks = vs;
+    }
+
+    /**
+     * 追加一个点，只能由写线程调用
+     */
+    public void add(double timestamp, double value) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        if (chunk >= chunkCount) {
+            grow();
+        }
+        timestampChunks[chunk][index & CHUNK_MASK] = timestamp;
+        valueChunks[chunk][index & CHUNK_MASK] = value;
+        size = index + 1;
+    }
+
+    /**
+     * 清空，只能在写线程没有在写的时候调用（比如开始记录之前）。已经分配的块会保留下来复用。
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return chunkCount * CHUNK_SIZE;
+    }
+
+    /**
+     * @return 当前已写好数据的只读视图，不复制
+     */
+    public Snapshot snapshot() {
+        // 先读 size 再读目录：目录只会变大，所以一定包含 size 之前的所有块
+        int n = size;
+        return new Snapshot(timestampChunks, valueChunks, n);
+    }
+
+    /**
+     * 复制出一份连续的值数组
+     */
+    public double[] toValueArray() {
+        return snapshot().copyValues();
+    }
+
+    private void grow() {
+        double[][] ts = timestampChunks;
+        double[][] vs = valueChunks;
+        if (chunkCount == ts.length) {
+            double[][] newTs = new double[ts.length * 2][];
+            double[][] newVs = new double[vs.length * 2][];
+            System.arraycopy(ts, 0, newTs, 0, chunkCount);
+            System.arraycopy(vs, 0, newVs, 0, chunkCount);
+            ts = newTs;
+            vs = newVs;
+        }
+        ts[chunkCount] = new double[CHUNK_SIZE];
+        vs[chunkCount] = new double[CHUNK_SIZE];
+        chunkCount++;
+        timestampChunks = ts;
+        valueChunks = vs;
+    }
+
+    /**
+     * 某一时刻的只读视图
+     */
+    public static class Snapshot {
+        private final double[][] timestampChunks;
+        private final double[][] valueChunks;
+        private final int size;
+
+        private Snapshot(double[][] timestampChunks, double[][] valueChunks, int size) {
+            this.timestampChunks = timestampChunks;
+            this.valueChunks = valueChunks;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return 第 i 个点的时间戳（秒）
+         */
+        public double timestamp(int i) {
+            return timestampChunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+        }
+
+        public double value(int i) {
+            return valueChunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+        }
+
+        public double[] copyValues() {
+            return copy(valueChunks);
+        }
+
+        public double[] copyTimestamps() {
+            return copy(timestampChunks);
+        }
+
+        private double[] copy(double[][] chunks) {
+            double[] result = new double[size];
+            for (int start = 0; start < size; start += CHUNK_SIZE) {
+                System.arraycopy(chunks[start >>> CHUNK_BITS], 0, result, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package frc.robot.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Library.team1706.LinearInterpolationTable;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
+
+/**
+ * 预先算好的射击查找表（离线生成，部署到 /home/lvuser/deploy/shotgrid.bin，运行时内存映射）
+ *
+ * 四个维度：炮台相对目标的位置 (dx, dy)，炮台的出膛速度 (vx, vy)，都是场地坐标系。
+ * 用相对目标的坐标，所以红蓝方共用一张表。每个格点存 [飞行时间, 飞轮转速]，查表时对周围 16 个格点做多线性插值。
+ * 不存瞄准角：虚拟目标离炮台很近时角度变化非常剧烈，插值误差很大；而飞行时间是连续的，
+ * 虚拟目标 = 目标 - v*T 和角度都由插值出来的 T 直接算，误差只有 |v|*ΔT。
+ *
+ * 生成时对每个格子内部的 65 个点（各维取 0、1/2、1 的组合，去掉角点）再用 ShotSolver 解一次，
+ * 飞行时间、转速或者落点的插值误差超过上限的一半就把这个格子标成无效，查表时返回 false，交给 ShotSolver。
+ * 多根区域（高速冲向目标时相邻格点落在不同的根上）和表斜率变化大的地方都会被这样排除掉。
+ *
+ * 表是用 ShotSolver + kShotTimeTable / kRPMTable 生成的，文件头里存了两张表的哈希，
+ * 表改了之后旧文件会被拒绝（回退到 ShotSolver），需要重新运行 gradlew generateShotGrid。
+ */
+public class ShotGrid {
+    private static final int MAGIC = 0x53475244; // "SGRD"
+    private static final int VERSION = 2;
+    private static final int FIELDS = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 * (8 + 8 + 4);
+
+    public static final String FILE_NAME = "shotgrid.bin";
+
+    // --- 默认网格范围 ---
+    private static final double[] DEFAULT_MIN = { -8.0, -4.5, -4.0, -4.0 };
+    private static final double[] DEFAULT_STEP = { 0.5, 0.5, 0.5, 0.5 };
+    private static final int[] DEFAULT_COUNT = { 33, 19, 17, 17 };
+
+    // --- 精度上限，查表命中时和 ShotSolver 的差不会超过这些值 ---
+    public static final double MAX_TOF_ERROR = 0.01;  // 秒
+    public static final double MAX_RPS_ERROR = 0.5;
+    public static final double MAX_MISS_ERROR = 0.02; // 虚拟目标的偏差（米）
+
+    private final ByteBuffer m_data;
+    private final ByteBuffer m_valid;
+    private final double[] m_min = new double[4];
+    private final double[] m_invStep = new double[4];
+    private final int[] m_count = new int[4];
+    private final int[] m_stride = new int[4];
+    private final int[] m_cellStride = new int[4];
+
+    // --- 查表结果 ---
+    private double m_fieldAngle;
+    private double m_rps;
+    private double m_tof;
+
+    private ShotGrid(ByteBuffer data, ByteBuffer valid, double[] min, double[] step, int[] count) {
+        m_data = data;
+        m_valid = valid;
+        int stride = FIELDS;
+        int cellStride = 1;
+        for (int a = 3; a >= 0; a--) {
+            m_min[a] = min[a];
+            m_invStep[a] = 1.0 / step[a];
+            m_count[a] = count[a];
+            m_stride[a] = stride;
+            m_cellStride[a] = cellStride;
+            stride *= count[a];
+            cellStride *= count[a] - 1;
+        }
+    }
+
+    private static long pointCount(int[] count) {
+        long n = 1;
+        for (int c : count) {
+            n *= c;
+        }
+        return n;
+    }
+
+    private static long cellCount(int[] count) {
+        long n = 1;
+        for (int c : count) {
+            n *= c - 1;
+        }
+        return n;
+    }
+
+    /**
+     * 加载部署目录下的表
+     * @return 文件不存在、格式不对或者和当前插值表不一致时返回 null
+     */
+    public static ShotGrid load(Path path, LinearInterpolationTable tofTable, LinearInterpolationTable rpsTable) {
+        if (!Files.exists(path)) {
+            MessageSender.logWarning("ShotGrid 文件不存在: " + path);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) {
+                MessageSender.logWarning("ShotGrid 文件格式不对: " + path);
+                return null;
+            }
+            if (map.getLong() != tableHash(tofTable, rpsTable)) {
+                MessageSender.logWarning("ShotGrid 和当前的插值表不一致，请重新运行 generateShotGrid");
+                return null;
+            }
+            double[] min = new double[4];
+            double[] step = new double[4];
+            int[] count = new int[4];
+            for (int a = 0; a < 4; a++) {
+                min[a] = map.getDouble();
+                step[a] = map.getDouble();
+                count[a] = map.getInt();
+            }
+            long dataSize = pointCount(count) * FIELDS * 4;
+            if (channel.size() != HEADER_SIZE + dataSize + cellCount(count)) {
+                MessageSender.logWarning("ShotGrid 文件长度不对: " + path);
+                return null;
+            }
+            map.position(HEADER_SIZE);
+            ByteBuffer data = map.slice().order(ByteOrder.LITTLE_ENDIAN);
+            map.position((int) (HEADER_SIZE + dataSize));
+            ByteBuffer valid = map.slice();
+            return new ShotGrid(data, valid, min, step, count);
+        } catch (IOException e) {
+            MessageSender.logError("ShotGrid 加载失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查表，结果用 getter 读
+     * @param dx 炮台相对目标的 x（炮台 - 目标）
+     * @param dy 炮台相对目标的 y
+     * @param vx 炮台出膛速度 x
+     * @param vy 炮台出膛速度 y
+     * @return 超出网格范围或者格子被标成无效时返回 false（这时应该用 ShotSolver）
+     */
+    public boolean lookup(double dx, double dy, double vx, double vy) {
+        double u0 = (dx - m_min[0]) * m_invStep[0];
+        double u1 = (dy - m_min[1]) * m_invStep[1];
+        double u2 = (vx - m_min[2]) * m_invStep[2];
+        double u3 = (vy - m_min[3]) * m_invStep[3];
+        if (!inRange(u0, 0) || !inRange(u1, 1) || !inRange(u2, 2) || !inRange(u3, 3)) {
+            return false;
+        }
+        int i0 = cellIndex(u0, 0), i1 = cellIndex(u1, 1), i2 = cellIndex(u2, 2), i3 = cellIndex(u3, 3);
+        int cell = i0 * m_cellStride[0] + i1 * m_cellStride[1] + i2 * m_cellStride[2] + i3 * m_cellStride[3];
+        if (m_valid.get(cell) == 0) {
+            return false;
+        }
+        interpolate(i0, i1, i2, i3, u0 - i0, u1 - i1, u2 - i2, u3 - i3);
+        m_fieldAngle = Math.atan2(-dy - vy * m_tof, -dx - vx * m_tof);
+        return true;
+    }
+
+    /** 格子 (i0..i3) 内的多线性插值，结果写到 m_tof / m_rps */
+    private void interpolate(int i0, int i1, int i2, int i3, double f0, double f1, double f2, double f3) {
+        int base = i0 * m_stride[0] + i1 * m_stride[1] + i2 * m_stride[2] + i3 * m_stride[3];
+        double tof = 0.0;
+        double rps = 0.0;
+        // 16 个角点
+        for (int corner = 0; corner < 16; corner++) {
+            int b0 = corner & 1, b1 = (corner >> 1) & 1, b2 = (corner >> 2) & 1, b3 = (corner >> 3) & 1;
+            double w = (b0 == 0 ? 1 - f0 : f0) * (b1 == 0 ? 1 - f1 : f1) * (b2 == 0 ? 1 - f2 : f2) * (b3 == 0 ? 1 - f3 : f3);
+            if (w == 0.0) {
+                continue;
+            }
+            int offset = (base + b0 * m_stride[0] + b1 * m_stride[1] + b2 * m_stride[2] + b3 * m_stride[3]) * 4;
+            tof += w * m_data.getFloat(offset);
+            rps += w * m_data.getFloat(offset + 4);
+        }
+        m_tof = tof;
+        m_rps = rps;
+    }
+
+    private boolean inRange(double u, int axis) {
+        return u >= 0.0 && u <= m_count[axis] - 1;
+    }
+
+    private int cellIndex(double u, int axis) {
+        // 最后一个格点上时用前一个格子，保证 i+1 不越界
+        return Math.min((int) u, m_count[axis] - 2);
+    }
+
+    /** @return 炮台指向虚拟目标的场地角度（弧度） */
+    public double getFieldAngle() {
+        return m_fieldAngle;
+    }
+
+    /** @return 飞轮转速（按炮台到虚拟目标的距离查 kRPMTable） */
+    public double getRps() {
+        return m_rps;
+    }
+
+    /** @return 飞行时间（秒） */
+    public double getTimeOfFlight() {
+        return m_tof;
+    }
+
+    /////////////////////////////////////////////////////////
+    /// 离线生成
+    /////////////////////////////////////////////////////////
+
+    /**
+     * 两张表的内容哈希，表改了就不一样
+     */
+    public static long tableHash(LinearInterpolationTable tofTable, LinearInterpolationTable rpsTable) {
+        long h = 1125899906842597L;
+        for (LinearInterpolationTable table : new LinearInterpolationTable[] { tofTable, rpsTable }) {
+            h = 31 * h + table.getClass().getName().hashCode();
+            for (double v : table.getX()) {
+                h = 31 * h + Double.doubleToLongBits(v);
+            }
+            for (double v : table.getY()) {
+                h = 31 * h + Double.doubleToLongBits(v);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return 插值结果 (tof, rps) 和 solver 的解差多少，用各自上限归一化后取最大值（<= 1 表示在上限内）
+     */
+    private static double normalizedError(double tof, double rps, double dx, double dy, double vx, double vy,
+                                          ShotSolver solver, LinearInterpolationTable rpsTable) {
+        solver.solve(dx, dy, 0.0, vx, vy, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        double tofError = Math.abs(tof - solver.getTimeOfFlight());
+        double rpsError = Math.abs(rps - rpsTable.getOutput(solver.getDistance()));
+        // 虚拟目标 = 目标 - v*T，偏差就是 |v| * ΔT
+        double missError = Math.hypot(vx, vy) * tofError;
+        return Math.max(tofError / MAX_TOF_ERROR, Math.max(rpsError / MAX_RPS_ERROR, missError / MAX_MISS_ERROR));
+    }
+
+    /**
+     * 用 ShotSolver 算出每个格点，检查每个格子，写文件。格点上直接给出发点和出膛速度，所以偏移和加速度外推都设成0。
+     */
+    public static void generate(Path path, MonotoneCubicInterpolationTable tofTable, LinearInterpolationTable rpsTable) throws IOException {
+        ShotSolver solver = new ShotSolver(tofTable);
+        solver.setTurretOffset(0.0, 0.0);
+        solver.setAccelLeadTime(0.0);
+
+        int points = (int) pointCount(DEFAULT_COUNT);
+        int cells = (int) cellCount(DEFAULT_COUNT);
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + points * FIELDS * 4 + cells).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(tableHash(tofTable, rpsTable));
+        for (int a = 0; a < 4; a++) {
+            out.putDouble(DEFAULT_MIN[a]);
+            out.putDouble(DEFAULT_STEP[a]);
+            out.putInt(DEFAULT_COUNT[a]);
+        }
+
+        for (int i0 = 0; i0 < DEFAULT_COUNT[0]; i0++) {
+            double dx = DEFAULT_MIN[0] + i0 * DEFAULT_STEP[0];
+            for (int i1 = 0; i1 < DEFAULT_COUNT[1]; i1++) {
+                double dy = DEFAULT_MIN[1] + i1 * DEFAULT_STEP[1];
+                for (int i2 = 0; i2 < DEFAULT_COUNT[2]; i2++) {
+                    double vx = DEFAULT_MIN[2] + i2 * DEFAULT_STEP[2];
+                    for (int i3 = 0; i3 < DEFAULT_COUNT[3]; i3++) {
+                        double vy = DEFAULT_MIN[3] + i3 * DEFAULT_STEP[3];
+                        // 目标放在原点，炮台在 (dx, dy)
+                        solver.solve(dx, dy, 0.0, vx, vy, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+                        out.putFloat((float) solver.getTimeOfFlight());
+                        out.putFloat((float) rpsTable.getOutput(solver.getDistance()));
+                    }
+                }
+            }
+        }
+
+        // 先把所有格子当成有效，用 interpolate() 检查每个格子内部的点，超过上限一半的格子标成无效
+        out.position(HEADER_SIZE);
+        ByteBuffer data = out.slice().order(ByteOrder.LITTLE_ENDIAN);
+        out.position(HEADER_SIZE + points * FIELDS * 4);
+        ByteBuffer valid = out.slice();
+        ShotGrid grid = new ShotGrid(data, valid, DEFAULT_MIN, DEFAULT_STEP, DEFAULT_COUNT);
+        int cell = 0;
+        for (int i0 = 0; i0 < DEFAULT_COUNT[0] - 1; i0++) {
+            for (int i1 = 0; i1 < DEFAULT_COUNT[1] - 1; i1++) {
+                for (int i2 = 0; i2 < DEFAULT_COUNT[2] - 1; i2++) {
+                    for (int i3 = 0; i3 < DEFAULT_COUNT[3] - 1; i3++) {
+                        valid.put(cell++, (byte) (grid.checkCell(i0, i1, i2, i3, solver, rpsTable) ? 1 : 0));
+                    }
+                }
+            }
+        }
+
+        out.rewind();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    /** @return 格子内部 3^4 - 16 个检查点的误差都不超过上限的一半 */
+    private boolean checkCell(int i0, int i1, int i2, int i3, ShotSolver solver, LinearInterpolationTable rpsTable) {
+        for (int k = 0; k < 81; k++) {
+            int k0 = k % 3, k1 = k / 3 % 3, k2 = k / 9 % 3, k3 = k / 27;
+            if (k0 != 1 && k1 != 1 && k2 != 1 && k3 != 1) {
+                continue; // 角点就是格点本身
+            }
+            double f0 = 0.5 * k0, f1 = 0.5 * k1, f2 = 0.5 * k2, f3 = 0.5 * k3;
+            interpolate(i0, i1, i2, i3, f0, f1, f2, f3);
+            double dx = m_min[0] + (i0 + f0) / m_invStep[0];
+            double dy = m_min[1] + (i1 + f1) / m_invStep[1];
+            double vx = m_min[2] + (i2 + f2) / m_invStep[2];
+            double vy = m_min[3] + (i3 + f3) / m_invStep[3];
+            if (normalizedError(m_tof, m_rps, dx, dy, vx, vy, solver, rpsTable) > 0.5) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 随机采样，和 ShotSolver 的结果对比
+     * @return [最大落点误差(米), 最大转速误差, 最大飞行时间误差(秒), 查表命中率]
+     */
+    public double[] verify(MonotoneCubicInterpolationTable tofTable, LinearInterpolationTable rpsTable, int samples, long seed) {
+        ShotSolver solver = new ShotSolver(tofTable);
+        solver.setTurretOffset(0.0, 0.0);
+        solver.setAccelLeadTime(0.0);
+        Random random = new Random(seed);
+        double[] maxError = new double[4];
+        int hits = 0;
+        for (int i = 0; i < samples; i++) {
+            double dx = m_min[0] + random.nextDouble() * (m_count[0] - 1) / m_invStep[0];
+            double dy = m_min[1] + random.nextDouble() * (m_count[1] - 1) / m_invStep[1];
+            double vx = m_min[2] + random.nextDouble() * (m_count[2] - 1) / m_invStep[2];
+            double vy = m_min[3] + random.nextDouble() * (m_count[3] - 1) / m_invStep[3];
+            if (!lookup(dx, dy, vx, vy)) {
+                continue;
+            }
+            hits++;
+            solver.solve(dx, dy, 0.0, vx, vy, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+            // 虚拟目标的偏差就是落点的偏差
+            double missX = (solver.getVirtualTargetX() - solver.getTurretX()) - (-dx - vx * m_tof);
+            double missY = (solver.getVirtualTargetY() - solver.getTurretY()) - (-dy - vy * m_tof);
+            maxError[0] = Math.max(maxError[0], Math.hypot(missX, missY));
+            maxError[1] = Math.max(maxError[1], Math.abs(m_rps - rpsTable.getOutput(solver.getDistance())));
+            maxError[2] = Math.max(maxError[2], Math.abs(m_tof - solver.getTimeOfFlight()));
+        }
+        maxError[3] = samples == 0 ? 0.0 : (double) hits / samples;
+        return maxError;
+    }
+
+    /**
+     * 离线生成入口：gradlew generateShotGrid
+     * @param args [输出路径]，默认 src/main/deploy/shotgrid.bin
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "src/main/deploy/" + FILE_NAME);
+        generate(path, ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable);
+        ShotGrid grid = load(path, ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable);
+        if (grid == null) {
+            throw new IOException("ShotGrid 写出后读不回来: " + path);
+        }
+        double[] error = grid.verify(ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable, 200000, 5515);
+        System.out.printf("ShotGrid written to %s, max error vs ShotSolver: miss %.4f m, rps %.3f, tof %.4f s, hit rate %.1f%%%n",
+            path, error[0], error[1], error[2], error[3] * 100);
+    }
+}
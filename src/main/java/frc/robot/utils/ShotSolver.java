@@ -0,0 +1,268 @@
+package frc.robot.utils;
+
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
+
+/**
+ * 移动射击的虚拟目标求解器
+ *
+ * 球出膛时带着炮台的场地速度 v，飞行时间 T 只和水平距离有关：T = tof(d)。
+ * 要打中目标，就要瞄准虚拟目标 target - v*T，于是 d(T) = |D - v*T|（D = 目标 - 炮台位置），
+ * 求解 f(T) = T - tof(d(T)) = 0。用牛顿法，导数 f'(T) = 1 - tof'(d) * d'(T)，
+ * tof' 来自单调三次插值表，通常 2~3 次迭代就收敛到微秒级。
+ * tof 表的值域是有界的，所以根一定在 [最短飞行时间, 最长飞行时间] 之间：
+ * 迭代时维护这个区间，牛顿步跳出区间或者导数太小时改用二分，保证收敛。
+ *
+ * 模型里考虑了：
+ * - 炮台不在机器人中心：位置 = 机器人位置 + R(heading)*offset，速度叠加 omega x r
+ * - 加速度：出膛速度 = 当前速度 + 炮台加速度 * accelLeadTime（和原来 accComp 的意思一样），
+ *   炮台加速度包含 alpha x r 和向心项 -omega^2 * r
+ *
+ * 全部是 double 运算，不分配内存。结果和收敛统计都存在字段里，用 getter 读。
+ */
+public class ShotSolver {
+    private static final int MAX_ITERATIONS = 30;
+    private static final double TOLERANCE = 1e-6;   // 秒
+    private static final double MIN_DERIVATIVE = 1e-3; // f'(T) 太小时牛顿步不可靠，改用二分
+
+    private final MonotoneCubicInterpolationTable m_tofTable;
+    private final double m_minTof;
+    private final double m_maxTof;
+    private double m_offsetX;
+    private double m_offsetY;
+    private double m_accelLeadTime = 0.010;
+
+    // --- 结果 ---
+    private double m_turretX, m_turretY;
+    private double m_turretVx, m_turretVy;
+    private double m_virtualX, m_virtualY;
+    private double m_distance;
+    private double m_tof;
+    private double m_fieldAngle;
+    private int m_iterations;
+    private boolean m_converged;
+    private double m_residual;
+
+    // --- 收敛统计 ---
+    private long m_solveCount = 0;
+    private long m_iterationTotal = 0;
+    private long m_failureCount = 0;
+    private int m_maxIterationsSeen = 0;
+
+    /**
+     * @param tofTable 距离（米）-> 飞行时间（秒）
+     */
+    public ShotSolver(MonotoneCubicInterpolationTable tofTable) {
+        m_tofTable = tofTable;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double y : tofTable.getY()) {
+            min = Math.min(min, y);
+            max = Math.max(max, y);
+        }
+        m_minTof = Math.max(0.0, min);
+        m_maxTof = max;
+    }
+
+    /**
+     * @param x 炮台在机器人坐标系下的前向偏移（米）
+     * @param y 炮台在机器人坐标系下的左向偏移（米）
+     */
+    public void setTurretOffset(double x, double y) {
+        m_offsetX = x;
+        m_offsetY = y;
+    }
+
+    /**
+     * @param seconds 用加速度外推出膛速度的时间，0 表示不考虑加速度
+     */
+    public void setAccelLeadTime(double seconds) {
+        m_accelLeadTime = seconds;
+    }
+
+    public boolean solve(double robotX, double robotY, double heading, KinematicStateEstimator.View state,
+                         double targetX, double targetY) {
+        return solve(robotX, robotY, heading,
+            state.getVx(), state.getVy(), state.getOmega(),
+            state.getAx(), state.getAy(), state.getAlpha(),
+            targetX, targetY);
+    }
+
+    public void updateTurretState(double robotX, double robotY, double heading, KinematicStateEstimator.View state) {
+        updateTurretState(robotX, robotY, heading,
+            state.getVx(), state.getVy(), state.getOmega(),
+            state.getAx(), state.getAy(), state.getAlpha());
+    }
+
+    /**
+     * 只算炮台的场地位置和出膛速度（不解飞行时间），结果用 getTurretX/Y、getTurretVx/Vy 读。ShotGrid 查表前用
+     */
+    public void updateTurretState(double robotX, double robotY, double heading,
+                                  double vx, double vy, double omega,
+                                  double ax, double ay, double alpha) {
+        // 炮台相对机器人中心的场地向量 r
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double rx = m_offsetX * cos - m_offsetY * sin;
+        double ry = m_offsetX * sin + m_offsetY * cos;
+
+        m_turretX = robotX + rx;
+        m_turretY = robotY + ry;
+
+        // v_t = v + omega x r，a_t = a + alpha x r - omega^2 r
+        double tvx = vx - omega * ry;
+        double tvy = vy + omega * rx;
+        double tax = ax - alpha * ry - omega * omega * rx;
+        double tay = ay + alpha * rx - omega * omega * ry;
+        m_turretVx = tvx + tax * m_accelLeadTime;
+        m_turretVy = tvy + tay * m_accelLeadTime;
+    }
+
+    /**
+     * 求解，速度、加速度都是场地坐标系
+     * @return 是否收敛（不收敛时结果是最后一次迭代的值，仍然可以用）
+     */
+    public boolean solve(double robotX, double robotY, double heading,
+                         double vx, double vy, double omega,
+                         double ax, double ay, double alpha,
+                         double targetX, double targetY) {
+        updateTurretState(robotX, robotY, heading, vx, vy, omega, ax, ay, alpha);
+
+        double dx = targetX - m_turretX;
+        double dy = targetY - m_turretY;
+
+        // 表两端是平的时候 f(最短) <= 0 <= f(最长)，根一定在区间里
+        double lo = m_minTof;
+        double hi = m_maxTof;
+        double t = Math.max(lo, Math.min(hi, m_tofTable.getOutput(Math.hypot(dx, dy))));
+        double residual = Double.POSITIVE_INFINITY;
+        int iter = 0;
+        boolean converged = false;
+        while (iter < MAX_ITERATIONS) {
+            iter++;
+            double ex = dx - m_turretVx * t;
+            double ey = dy - m_turretVy * t;
+            double d = Math.hypot(ex, ey);
+            double f = t - m_tofTable.getOutput(d);
+            if (f < 0.0) {
+                lo = t;
+            } else {
+                hi = t;
+            }
+
+            // d'(T) = -(e . v) / d
+            double dd = d > 1e-9 ? -(ex * m_turretVx + ey * m_turretVy) / d : 0.0;
+            double fp = 1.0 - m_tofTable.getDerivative(d) * dd;
+
+            double next = t - f / fp;
+            if (!(fp > MIN_DERIVATIVE) || next < lo || next > hi) {
+                next = 0.5 * (lo + hi);
+            }
+            residual = Math.abs(next - t);
+            t = next;
+            if (residual < TOLERANCE || hi - lo < TOLERANCE) {
+                converged = true;
+                break;
+            }
+        }
+
+        m_tof = t;
+        m_virtualX = targetX - m_turretVx * t;
+        m_virtualY = targetY - m_turretVy * t;
+        double aimX = m_virtualX - m_turretX;
+        double aimY = m_virtualY - m_turretY;
+        m_distance = Math.hypot(aimX, aimY);
+        m_fieldAngle = Math.atan2(aimY, aimX);
+        m_iterations = iter;
+        m_converged = converged;
+        m_residual = residual;
+
+        m_solveCount++;
+        m_iterationTotal += iter;
+        if (!converged) {
+            m_failureCount++;
+        }
+        if (iter > m_maxIterationsSeen) {
+            m_maxIterationsSeen = iter;
+        }
+        return converged;
+    }
+
+    /** @return 虚拟目标 x（场地坐标，米） */
+    public double getVirtualTargetX() {
+        return m_virtualX;
+    }
+
+    /** @return 虚拟目标 y（场地坐标，米） */
+    public double getVirtualTargetY() {
+        return m_virtualY;
+    }
+
+    /** @return 炮台到虚拟目标的距离（米），用来查转速表 */
+    public double getDistance() {
+        return m_distance;
+    }
+
+    /** @return 飞行时间（秒） */
+    public double getTimeOfFlight() {
+        return m_tof;
+    }
+
+    /** @return 炮台指向虚拟目标的场地角度（弧度） */
+    public double getFieldAngle() {
+        return m_fieldAngle;
+    }
+
+    public double getTurretX() {
+        return m_turretX;
+    }
+
+    public double getTurretY() {
+        return m_turretY;
+    }
+
+    /** @return 炮台出膛速度 x（场地坐标，已含加速度外推） */
+    public double getTurretVx() {
+        return m_turretVx;
+    }
+
+    /** @return 炮台出膛速度 y（场地坐标，已含加速度外推） */
+    public double getTurretVy() {
+        return m_turretVy;
+    }
+
+    public int getIterations() {
+        return m_iterations;
+    }
+
+    public boolean isConverged() {
+        return m_converged;
+    }
+
+    /** @return 最后一步的 |ΔT|（秒） */
+    public double getResidual() {
+        return m_residual;
+    }
+
+    public long getSolveCount() {
+        return m_solveCount;
+    }
+
+    public long getFailureCount() {
+        return m_failureCount;
+    }
+
+    public int getMaxIterations() {
+        return m_maxIterationsSeen;
+    }
+
+    public double getAverageIterations() {
+        return m_solveCount == 0 ? 0.0 : (double) m_iterationTotal / m_solveCount;
+    }
+
+    public void resetStats() {
+        m_solveCount = 0;
+        m_iterationTotal = 0;
+        m_failureCount = 0;
+        m_maxIterationsSeen = 0;
+    }
+}
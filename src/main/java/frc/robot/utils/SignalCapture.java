@@ -0,0 +1,225 @@
+package frc.robot.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.hardware.TalonFX;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * 多信号高频采集
+ *
+ * 使用方法：
+ * - addSignal() / addMotor() 添加要采集的 Phoenix 6 信号（只能在 start 之前）
+ * - start(频率) 开始采集，最高 250Hz；每次采样只调用一次 BaseStatusSignal.refreshAll
+ * - stop() 停止，之后可以用 getSnapshot() 取数据，或者 writeColumnar() 写成按列存储的二进制文件
+ *
+ * 每个信号存 (信号自己的时间戳, 值)，另外每一行存 (FPGA 时间, refreshAll 的返回码)。
+ * 数据都在 SampleBuffer 里，采集过程中不装箱。仿真里同样可以用，文件写到当前目录。
+ */
+public class SignalCapture {
+    public static final double MAX_FREQUENCY = 250.0;
+    private static final int INITIAL_CHUNKS = 4;
+    private static final int FILE_MAGIC = 0x53434150; // "SCAP"
+    private static final int FILE_VERSION = 1;
+
+    private final String name;
+    private final List<String> labels = new ArrayList<>();
+
+    // 添加信号时就分配好对应的列，开始采集之前 getSnapshot() 也能拿到空的视图
+    private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+    private SampleBuffer[] columns = new SampleBuffer[0];
+    private final SampleBuffer rows = new SampleBuffer(INITIAL_CHUNKS);
+
+    private final Notifier notifier;
+    private volatile boolean isCapturing = false;
+
+    /**
+     * @param name 采集名称，用于文件名和 Notifier 线程名
+     */
+    public SignalCapture(String name) {
+        this.name = name;
+        notifier = new Notifier(this::sample);
+        notifier.setName("SignalCapture-" + name);
+    }
+
+    /**
+     * 添加一个信号
+     * @param label 列名，比如 "turret/velocity"
+     */
+    public SignalCapture addSignal(String label, BaseStatusSignal signal) {
+        if (isCapturing) {
+            MessageSender.logWarning("SignalCapture " + name + " 正在采集，不能再添加信号: " + label);
+            return this;
+        }
+        labels.add(label);
+        int n = signals.length;
+        signals = Arrays.copyOf(signals, n + 1);
+        signals[n] = signal;
+        columns = Arrays.copyOf(columns, n + 1);
+        columns[n] = new SampleBuffer(INITIAL_CHUNKS);
+        return this;
+    }
+
+    /**
+     * 添加一个电机的常用信号：位置、速度、电压、定子电流
+     * @param prefix 列名前缀，比如 "drive0"
+     */
+    public SignalCapture addMotor(String prefix, TalonFX motor) {
+        addSignal(prefix + "/position", motor.getPosition());
+        addSignal(prefix + "/velocity", motor.getVelocity());
+        addSignal(prefix + "/voltage", motor.getMotorVoltage());
+        addSignal(prefix + "/statorCurrent", motor.getStatorCurrent());
+        return this;
+    }
+
+    public int getSignalCount() {
+        return signals.length;
+    }
+
+    public String getLabel(int index) {
+        return labels.get(index);
+    }
+
+    public boolean isCapturing() {
+        return isCapturing;
+    }
+
+    /**
+     * 开始采集，会清空上一次的数据
+     * @param frequencyHz 采样频率，超过 250Hz 按 250Hz
+     */
+    public void start(double frequencyHz) {
+        if (isCapturing) {
+            return;
+        }
+        double frequency = Math.max(1.0, Math.min(frequencyHz, MAX_FREQUENCY));
+
+        for (SampleBuffer column : columns) {
+            column.clear();
+        }
+        rows.clear();
+
+        if (signals.length > 0) {
+            BaseStatusSignal.setUpdateFrequencyForAll(frequency, signals);
+        }
+
+        isCapturing = true;
+        notifier.startPeriodic(1.0 / frequency);
+    }
+
+    public void stop() {
+        isCapturing = false;
+        notifier.stop();
+    }
+
+    private void sample() {
+        if (!isCapturing) {
+            return;
+        }
+
+        StatusCode status = signals.length > 0 ? BaseStatusSignal.refreshAll(signals) : StatusCode.OK;
+        double now = Timer.getFPGATimestamp();
+
+        for (int i = 0; i < signals.length; i++) {
+            BaseStatusSignal signal = signals[i];
+            columns[i].add(signal.getTimestamp().getTime(), signal.getValueAsDouble());
+        }
+        // 每一列都写完之后再写行，读者以行数为准就不会读到半行
+        rows.add(now, status.value);
+    }
+
+    /**
+     * @return 已采集的行数
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * @return 第 index 个信号已采集数据的只读视图，不复制；还没开始采集时是空的
+     */
+    public SampleBuffer.Snapshot getSnapshot(int index) {
+        return columns[index].snapshot();
+    }
+
+    /**
+     * @return 每一行的 (FPGA 时间, refreshAll 返回码) 的只读视图
+     */
+    public SampleBuffer.Snapshot getRowSnapshot() {
+        return rows.snapshot();
+    }
+
+    /**
+     * 默认文件路径，和 SmartDashboardEx 的日志放在一起
+     */
+    public String getDefaultPathname() {
+        String currentDateTime = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String dir = RobotBase.isSimulation() ? "./" : "/home/lvuser/";
+        return dir + currentDateTime + "-" + name + ".cap";
+    }
+
+    /**
+     * 把已采集的数据写成按列存储的二进制文件（大端序，DataOutputStream）：
+     *
+     * [magic int][version int][列数 int][行数 int]
+     * 每一列的名字：[长度 short][UTF-8]
+     * 行时间列：double × 行数，然后 refreshAll 返回码列：double × 行数
+     * 然后每个信号依次：时间戳列 double × 行数，值列 double × 行数
+     *
+     * 有文件IO，不要在主循环里调用。
+     * @return 是否写成功
+     */
+    public boolean writeColumnar(String pathname) {
+        SampleBuffer.Snapshot rowSnapshot = rows.snapshot();
+        int rowCount = rowSnapshot.size();
+        SampleBuffer.Snapshot[] snapshots = new SampleBuffer.Snapshot[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            snapshots[i] = columns[i].snapshot();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pathname), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshots.length);
+            out.writeInt(rowCount);
+            for (String label : labels) {
+                byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            for (int r = 0; r < rowCount; r++) {
+                out.writeDouble(rowSnapshot.timestamp(r));
+            }
+            for (int r = 0; r < rowCount; r++) {
+                out.writeDouble(rowSnapshot.value(r));
+            }
+            for (SampleBuffer.Snapshot column : snapshots) {
+                for (int r = 0; r < rowCount; r++) {
+                    out.writeDouble(column.timestamp(r));
+                }
+                for (int r = 0; r < rowCount; r++) {
+                    out.writeDouble(column.value(r));
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            MessageSender.logError("SignalCapture 写文件失败: " + pathname + ", " + e.getMessage());
+            return false;
+        }
+    }
+}
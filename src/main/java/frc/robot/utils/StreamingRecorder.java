@@ -0,0 +1,543 @@
+package frc.robot.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按列存储的流式记录器，给 SmartDashboardEx 的文件日志用
+ *
+ * 每个 key 第一次出现时分配一个整数ID，之后每条记录是固定16字节（时间戳 double + 值 long），
+ * 写进这个 key 自己的数据块里。所有数据块来自一块预先分配好的堆外内存，满了的块交给后台线程写入文件，
+ * 写完再还回来，所以整场比赛内存占用是固定的；块用完时新记录直接丢弃并计数。
+ *
+ * 只允许一个线程调用 record* 和 flush()（机器人主线程）。记录线程和后台线程之间只通过一个段队列交接：
+ * 写满的块和 flush 时各 key 当前块里已完成的部分都按记录线程上发生的顺序排进同一个队列，
+ * 所以同一个 key 的段在文件里一定按时间先后出现。flush() 不做任何IO。
+ *
+ * 文件格式：
+ * - xxx.rec：若干段 [keyId int][记录数 int][记录 × N]，小端序；同一个 key 的记录在文件里按时间先后出现
+ * - xxx.keys：文本，"K id 类型 名字" 和 "S id 字符串值"，用制表符分隔
+ * - xxx.log：可选的文本导出，每行 "时间戳->key:值"，按时间排序（见 setTextExport）
+ */
+public class StreamingRecorder {
+    public static final int KIND_NUMBER = 0;
+    public static final int KIND_BOOLEAN = 1;
+    public static final int KIND_STRING = 2;
+    private static final int KIND_COUNT = 3;
+
+    public static final int RECORD_SIZE = 16;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCK_RECORDS = BLOCK_SIZE / RECORD_SIZE;
+    private static final int BLOCK_COUNT = 256;             // 共 1MB 堆外内存
+    private static final int MAX_KEYS = 192;                // 每个 key 至少占一个块，要留出空闲块轮转
+    private static final int MAX_STRINGS = 4096;
+    private static final long WRITER_PARK_NS = 50_000_000L;
+    // 段队列的容量：写满的块最多 BLOCK_COUNT 个同时在队列里，剩下的留给 flush 的部分段
+    private static final int SEGMENT_QUEUE_SIZE = BLOCK_COUNT + 2 * MAX_KEYS;
+
+    private final String recordPath;
+    private final String keysPath;
+    private final String textPath;
+
+    private final ByteBuffer arena = ByteBuffer.allocateDirect(BLOCK_COUNT * BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // --- 块状态 ---
+    private final AtomicIntegerArray blockPublished = new AtomicIntegerArray(BLOCK_COUNT); // 已经写好的记录数（记录线程写）
+    private final int[] blockWritten = new int[BLOCK_COUNT];                                // 已经写进文件的记录数（后台线程写）
+    private final int[] blockKey = new int[BLOCK_COUNT];
+    private final IntQueue freeBlocks = new IntQueue(BLOCK_COUNT);   // 后台线程 -> 记录线程
+    private final IntQueue segments = new IntQueue(SEGMENT_QUEUE_SIZE); // 记录线程 -> 后台线程，见 segment()
+
+    // --- key 状态（记录线程独占，除了 currentBlock）---
+    @SuppressWarnings("unchecked")
+    private final Map<String, Integer>[] keyIds = new HashMap[KIND_COUNT];
+    private final AtomicIntegerArray currentBlock = new AtomicIntegerArray(MAX_KEYS);
+    private final int[] keyCount = new int[MAX_KEYS];
+    private final long[] lastValue = new long[MAX_KEYS];
+    private final int[] flushedUpTo = new int[MAX_KEYS];   // 当前块里已经交给后台线程的记录数
+    private volatile int keyTotal = 0;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    // 新出现的 key 和字符串，交给后台线程写进 .keys 文件（只在第一次出现时分配内存）
+    private final ConcurrentLinkedQueue<Definition> definitions = new ConcurrentLinkedQueue<>();
+
+    // 后台线程自己的 key/字符串表，文本导出时用
+    private final List<String> writerKeyNames = new ArrayList<>();
+    private final List<Integer> writerKeyKinds = new ArrayList<>();
+    private final List<String> writerStrings = new ArrayList<>();
+    private volatile boolean textExport = false;
+
+    private long droppedRecords = 0;
+    private volatile boolean flushRequested = false;
+    private volatile boolean running = false;
+    private Thread writerThread;
+
+    public StreamingRecorder(String basePathname) {
+        recordPath = basePathname + ".rec";
+        keysPath = basePathname + ".keys";
+        textPath = basePathname + ".log";
+        for (int i = 0; i < KIND_COUNT; ++i) {
+            keyIds[i] = new HashMap<>();
+        }
+        for (int b = 0; b < BLOCK_COUNT; ++b) {
+            freeBlocks.offer(b);
+        }
+    }
+
+    public String getRecordPath() {
+        return recordPath;
+    }
+
+    public String getKeysPath() {
+        return keysPath;
+    }
+
+    public String getTextPath() {
+        return textPath;
+    }
+
+    /**
+     * 每次 flush 落盘之后，是否在后台线程上把整个 .rec 按时间顺序导出成文本 .log
+     */
+    public void setTextExport(boolean isOn) {
+        textExport = isOn;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writerLoop, "StreamingRecorder");
+        writerThread.setDaemon(true);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+        writerThread.start();
+    }
+
+    /**
+     * 把每个 key 当前块里已完成的部分排进段队列，再通知后台线程落盘。只能在记录线程上调用，不做任何IO。
+     * 后台线程落后太多、队列放不下时这次只落盘已经排队的段，剩下的留到下一次 flush。
+     */
+    public void flush() {
+        int total = keyTotal;
+        if (segments.size() + total <= SEGMENT_QUEUE_SIZE - BLOCK_COUNT) {
+            for (int id = 0; id < total; ++id) {
+                int block = currentBlock.get(id);
+                if (block < 0) {
+                    continue;
+                }
+                int published = blockPublished.get(block);
+                if (published > flushedUpTo[id]) {
+                    segments.offer(segment(block, published, false));
+                    flushedUpTo[id] = published;
+                }
+            }
+        }
+        flushRequested = true;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * @return 因为块用完或者 key 太多被丢弃的记录数
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public void recordNumber(String key, double timestamp, double value, boolean allowDuplicate) {
+        append(KIND_NUMBER, key, timestamp, Double.doubleToRawLongBits(value), allowDuplicate);
+    }
+
+    public void recordBoolean(String key, double timestamp, boolean value, boolean allowDuplicate) {
+        append(KIND_BOOLEAN, key, timestamp, value ? 1 : 0, allowDuplicate);
+    }
+
+    public void recordString(String key, double timestamp, String value, boolean allowDuplicate) {
+        append(KIND_STRING, key, timestamp, internString(value), allowDuplicate);
+    }
+
+    private void append(int kind, String key, double timestamp, long value, boolean allowDuplicate) {
+        int id = internKey(kind, key);
+        if (id < 0) {
+            droppedRecords++;
+            return;
+        }
+
+        int count = keyCount[id];
+        // 与最近一次记录相同则忽略
+        if (!allowDuplicate && count > 0 && lastValue[id] == value) {
+            return;
+        }
+
+        int block = currentBlock.get(id);
+        int index = block < 0 ? BLOCK_RECORDS : blockPublished.get(block);
+        if (index >= BLOCK_RECORDS) {
+            block = swapBlock(id, block);
+            if (block < 0) {
+                droppedRecords++;
+                return;
+            }
+            index = 0;
+        }
+
+        int offset = block * BLOCK_SIZE + index * RECORD_SIZE;
+        arena.putDouble(offset, timestamp);
+        arena.putLong(offset + 8, value);
+        blockPublished.lazySet(block, index + 1);
+
+        keyCount[id] = count + 1;
+        lastValue[id] = value;
+    }
+
+    /**
+     * 把写满的块交给后台线程，换一个空块
+     * @return 新块的编号，没有空块时返回 -1
+     */
+    private int swapBlock(int id, int fullBlock) {
+        int fresh = freeBlocks.poll();
+        if (fresh < 0) {
+            return -1;
+        }
+        blockKey[fresh] = id;
+        blockPublished.set(fresh, 0);
+        currentBlock.set(id, fresh);
+        flushedUpTo[id] = 0;
+        if (fullBlock >= 0) {
+            segments.offer(segment(fullBlock, BLOCK_RECORDS, true));
+        }
+        return fresh;
+    }
+
+    /**
+     * 段队列的元素：块编号、写到第几条记录、写完后是否把块还回空闲队列
+     */
+    private static int segment(int block, int upTo, boolean release) {
+        return (block << 16) | (upTo << 1) | (release ? 1 : 0);
+    }
+
+    private int internKey(int kind, String key) {
+        Map<String, Integer> ids = keyIds[kind];
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        int total = keyTotal;
+        if (total >= MAX_KEYS) {
+            return -1;
+        }
+        ids.put(key, total);
+        currentBlock.set(total, -1);
+        definitions.offer(new Definition(true, total, kind, key));
+        keyTotal = total + 1;
+        return total;
+    }
+
+    private long internString(String value) {
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (stringIds.size() >= MAX_STRINGS) {
+            return -1; // 字符串太多，记成 -1
+        }
+        int newId = stringIds.size();
+        stringIds.put(value, newId);
+        definitions.offer(new Definition(false, newId, KIND_STRING, value));
+        return newId;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    /////////////////////////////////////////////////////////
+    /// 后台写文件线程
+    /////////////////////////////////////////////////////////
+
+    private void writerLoop() {
+        // 文本导出要把文件映射到内存读，而 READ 不能和 APPEND 一起用，所以手动定位到文件末尾
+        try (FileChannel channel = FileChannel.open(Paths.get(recordPath),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             BufferedWriter keysWriter = Files.newBufferedWriter(Paths.get(keysPath), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+
+            channel.position(channel.size());
+            ByteBuffer view = arena.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer segmentHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (running) {
+                // 先读标志再取段：flush() 在设标志之前排进队列的段这一轮一定会取到
+                boolean flush = flushRequested;
+                if (flush) {
+                    flushRequested = false;
+                }
+                writeDefinitions(keysWriter);
+
+                // 按记录线程排队的顺序写，同一个 key 的段就按时间先后落盘
+                int entry;
+                while ((entry = segments.poll()) >= 0) {
+                    int block = entry >>> 16;
+                    writeSegment(channel, view, segmentHeader, block, (entry & 0xFFFF) >>> 1);
+                    if ((entry & 1) != 0) {
+                        blockWritten[block] = 0;
+                        freeBlocks.offer(block);
+                    }
+                }
+
+                if (flush) {
+                    writeDefinitions(keysWriter);
+                    keysWriter.flush();
+                    channel.force(false);
+                    if (textExport) {
+                        exportText(channel);
+                    }
+                }
+
+                LockSupport.parkNanos(WRITER_PARK_NS);
+            }
+        } catch (IOException e) {
+            running = false;
+            MessageSender.logError("StreamingRecorder 文件操作失败: " + e.getMessage());
+        }
+    }
+
+    private void writeDefinitions(BufferedWriter keysWriter) throws IOException {
+        Definition def;
+        while ((def = definitions.poll()) != null) {
+            // ID 是按顺序分配的，所以这里直接追加
+            if (def.isKey) {
+                writerKeyNames.add(def.text);
+                writerKeyKinds.add(def.kind);
+                keysWriter.write("K\t" + def.id + "\t" + def.kind + "\t" + escape(def.text));
+            } else {
+                writerStrings.add(def.text);
+                keysWriter.write("S\t" + def.id + "\t" + escape(def.text));
+            }
+            keysWriter.newLine();
+        }
+    }
+
+    private void writeSegment(FileChannel channel, ByteBuffer view, ByteBuffer header, int block, int upTo) throws IOException {
+        int from = blockWritten[block];
+        if (upTo <= from) {
+            return;
+        }
+        header.clear();
+        header.putInt(blockKey[block]);
+        header.putInt(upTo - from);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        int base = block * BLOCK_SIZE;
+        view.limit(base + upTo * RECORD_SIZE);
+        view.position(base + from * RECORD_SIZE);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        view.clear();
+        blockWritten[block] = upTo;
+    }
+
+    /////////////////////////////////////////////////////////
+    /// 文本导出
+    /////////////////////////////////////////////////////////
+
+    /**
+     * 把 .rec 映射到内存，按时间戳对各个 key 的记录做多路归并，逐行写进 .log。
+     *
+     * 同一个 key 的各段在文件里已经按时间先后排好，所以只需要一个按“各 key 下一条记录的时间戳”排序的小顶堆，
+     * 复杂度 O(n log k)，不需要把记录拼成字符串再排序。只在后台线程上运行。
+     */
+    private void exportText(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int keyCount = writerKeyNames.size();
+        if (size == 0 || keyCount == 0) {
+            return;
+        }
+        MappedByteBuffer rec = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        rec.order(ByteOrder.LITTLE_ENDIAN);
+
+        // 第一遍：找出每个 key 的所有段（记录起始偏移 + 记录数）
+        int[][] segStart = new int[keyCount][];
+        int[][] segCount = new int[keyCount][];
+        int[] segTotal = new int[keyCount];
+        int pos = 0;
+        while (pos + 8 <= size) {
+            int id = rec.getInt(pos);
+            int count = rec.getInt(pos + 4);
+            int start = pos + 8;
+            pos = start + count * RECORD_SIZE;
+            if (id < 0 || id >= keyCount || pos > size) {
+                break;
+            }
+            int n = segTotal[id];
+            if (segStart[id] == null) {
+                segStart[id] = new int[8];
+                segCount[id] = new int[8];
+            } else if (n == segStart[id].length) {
+                segStart[id] = Arrays.copyOf(segStart[id], n * 2);
+                segCount[id] = Arrays.copyOf(segCount[id], n * 2);
+            }
+            segStart[id][n] = start;
+            segCount[id][n] = count;
+            segTotal[id] = n + 1;
+        }
+
+        // 第二遍：多路归并
+        int[] segIndex = new int[keyCount];
+        int[] recIndex = new int[keyCount];
+        double[] headTs = new double[keyCount];
+        int[] heap = new int[keyCount];
+        int heapSize = 0;
+        for (int id = 0; id < keyCount; ++id) {
+            if (segTotal[id] > 0) {
+                headTs[id] = rec.getDouble(segStart[id][0]);
+                heap[heapSize++] = id;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; --i) {
+            siftDown(heap, heapSize, i, headTs);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(textPath), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (heapSize > 0) {
+                int id = heap[0];
+                int offset = segStart[id][segIndex[id]] + recIndex[id] * RECORD_SIZE;
+                writeLine(writer, id, headTs[id], rec.getLong(offset + 8));
+
+                // 移到这个 key 的下一条记录
+                if (++recIndex[id] >= segCount[id][segIndex[id]]) {
+                    recIndex[id] = 0;
+                    segIndex[id]++;
+                }
+                if (segIndex[id] < segTotal[id]) {
+                    headTs[id] = rec.getDouble(segStart[id][segIndex[id]] + recIndex[id] * RECORD_SIZE);
+                } else {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, 0, headTs);
+            }
+        }
+    }
+
+    private void writeLine(BufferedWriter writer, int id, double timestamp, long value) throws IOException {
+        writer.write(Double.toString(timestamp));
+        writer.write("->");
+        writer.write(writerKeyNames.get(id));
+        writer.write(':');
+        switch (writerKeyKinds.get(id)) {
+            case KIND_NUMBER:
+                writer.write(Double.toString(Double.longBitsToDouble(value)));
+                break;
+            case KIND_BOOLEAN:
+                writer.write(value != 0 ? "true" : "false");
+                break;
+            default:
+                writer.write(value >= 0 && value < writerStrings.size() ? writerStrings.get((int) value) : "?");
+                break;
+        }
+        writer.newLine();
+    }
+
+    /**
+     * 小顶堆下沉，按时间戳比较，时间戳相同时按 key ID
+     */
+    private static void siftDown(int[] heap, int size, int i, double[] ts) {
+        int item = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child], ts)) {
+                child++;
+            }
+            if (!before(heap[child], item, ts)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    private static boolean before(int a, int b, double[] ts) {
+        int c = Double.compare(ts[a], ts[b]);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+    private static class Definition {
+        final boolean isKey;
+        final int id;
+        final int kind;
+        final String text;
+
+        Definition(boolean isKey, int id, int kind, String text) {
+            this.isKey = isKey;
+            this.id = id;
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 单生产者单消费者的 int 队列
+     */
+    private static class IntQueue {
+        private final int[] items;
+        private final int mask;
+        private volatile long head = 0;  // 消费者
+        private volatile long tail = 0;  // 生产者
+
+        IntQueue(int capacity) {
+            int size = Integer.highestOneBit(capacity - 1) << 1;
+            items = new int[size];
+            mask = size - 1;
+        }
+
+        void offer(int value) {
+            long t = tail;
+            items[(int) (t & mask)] = value;
+            tail = t + 1;
+        }
+
+        int size() {
+            return (int) (tail - head);
+        }
+
+        /**
+         * @return 队首元素，队列为空时返回 -1
+         */
+        int poll() {
+            long h = head;
+            if (h >= tail) {
+                return -1;
+            }
+            int value = items[(int) (h & mask)];
+            head = h + 1;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package frc.robot.utils;
+
+/**
+ * 炮台绕线规划：在线缆限位 [min, max] 里选目标角度的"圈数"
+ *
+ * 限位超过 360 度时，同一个方向有几种转法（angle + k*360）。原来 normalizeAngle 只取第一个合法解，
+ * 目标越过接缝时炮台要反向绕一大圈，射击中间白白停几百毫秒。这里对每种转法估算代价：
+ * - 从当前角度转过去的时间（按 MotionMagic 的梯形速度曲线）
+ * - 按目标的角速度往前看 horizon 秒，如果那时这种转法会撞限位，就要再绕一圈回来，加上一圈的时间
+ * - 和上一次选的是同一圈时减一点，防止来回跳
+ * 取代价最小的。提前看到要撞限位时会直接换圈（提前退绕），而不是等撞上了再绕。
+ * 目标落在限位的死区里（限位不足 360 度）时，停在目标接下来要去的那一侧限位上。
+ *
+ * 角度单位都是度，速度 / 加速度是炮台角度的度/秒、度/秒^2。
+ */
+public class TurretWrapPlanner {
+    private final double m_min;
+    private final double m_max;
+    private double m_cruiseVelocity;
+    private double m_acceleration;
+    private double m_horizon = 0.5;
+    private double m_hysteresis = 0.05;
+
+    private double m_last = Double.NaN;
+    private boolean m_preUnwound = false;
+
+    /**
+     * @param min 限位下限（度）
+     * @param max 限位上限（度）
+     * @param cruiseVelocity 炮台最大角速度（度/秒）
+     * @param acceleration 炮台角加速度（度/秒^2）
+     */
+    public TurretWrapPlanner(double min, double max, double cruiseVelocity, double acceleration) {
+        m_min = Math.min(min, max);
+        m_max = Math.max(min, max);
+        setMotionLimits(cruiseVelocity, acceleration);
+    }
+
+    public void setMotionLimits(double cruiseVelocity, double acceleration) {
+        m_cruiseVelocity = Math.max(1e-6, cruiseVelocity);
+        m_acceleration = Math.max(1e-6, acceleration);
+    }
+
+    /**
+     * @param seconds 往前看多久的目标运动
+     */
+    public void setHorizon(double seconds) {
+        m_horizon = Math.max(0.0, seconds);
+    }
+
+    /**
+     * @param seconds 留在上一次那一圈的优惠（秒）
+     */
+    public void setHysteresis(double seconds) {
+        m_hysteresis = Math.max(0.0, seconds);
+    }
+
+    /** 重新开始瞄准时调用，忘掉上一次选的圈 */
+    public void reset() {
+        m_last = Double.NaN;
+        m_preUnwound = false;
+    }
+
+    /**
+     * @param target 目标角度（度，任意圈数，比如 -180 ~ 180）
+     * @param current 炮台当前角度（度，机械角度）
+     * @param targetRate 目标角度的变化率（度/秒），不知道时传 0
+     * @return 限位内的目标角度
+     */
+    public double plan(double target, double current, double targetRate) {
+        double predicted = target + targetRate * m_horizon;
+        long kLow = (long) Math.ceil((m_min - target) / 360.0);
+        long kHigh = (long) Math.floor((m_max - target) / 360.0);
+
+        double best = Double.NaN;
+        double bestCost = Double.POSITIVE_INFINITY;
+        boolean bestNeedsUnwind = false;
+        double nearestCost = Double.POSITIVE_INFINITY;
+        for (long k = kLow; k <= kHigh; k++) {
+            double candidate = target + 360.0 * k;
+            double cost = moveTime(Math.abs(candidate - current));
+            nearestCost = Math.min(nearestCost, cost);
+            double future = predicted + 360.0 * k;
+            boolean needsUnwind = future < m_min || future > m_max;
+            if (needsUnwind) {
+                cost += moveTime(360.0);
+            }
+            if (!Double.isNaN(m_last) && Math.abs(candidate - m_last) < 180.0) {
+                cost -= m_hysteresis;
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = candidate;
+                bestNeedsUnwind = needsUnwind;
+            }
+        }
+
+        if (Double.isNaN(best)) {
+            // 死区：停在目标接下来要去的那一侧
+            best = arcDistance(predicted, m_min) < arcDistance(predicted, m_max) ? m_min : m_max;
+            m_preUnwound = false;
+        } else {
+            // 选的不是离当前最近的那一圈 = 为了躲开接下来的限位提前换圈
+            m_preUnwound = !bestNeedsUnwind && moveTime(Math.abs(best - current)) > nearestCost;
+        }
+        m_last = best;
+        return best;
+    }
+
+    /** @return 最近一次 plan() 是否为了躲限位选了更远的一圈 */
+    public boolean isPreUnwinding() {
+        return m_preUnwound;
+    }
+
+    /**
+     * 梯形速度曲线从静止到静止转过 distance 度的时间
+     */
+    public double moveTime(double distance) {
+        double rampDistance = m_cruiseVelocity * m_cruiseVelocity / m_acceleration;
+        if (distance < rampDistance) {
+            return 2.0 * Math.sqrt(distance / m_acceleration);
+        }
+        return distance / m_cruiseVelocity + m_cruiseVelocity / m_acceleration;
+    }
+
+    private static double arcDistance(double a, double b) {
+        return Math.abs(Math.IEEEremainder(a - b, 360.0));
+    }
+}
@@ -0,0 +1,190 @@
+package frc.robot.utils;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.PubSubOption;
+import frc.robot.LimelightHelpers;
+import frc.robot.LimelightHelpers.PoseEstimateBuffer;
+
+/**
+ * 逐帧接收 Limelight 位姿：sendAll 订阅，NT 把两次读之间到的每一帧都存在订阅的队列里，主循环每拍读一次
+ *
+ * 原来每 20ms 对每个相机 getAtomic() 一次，没有新帧也拷一遍数组，两拍之间来了两帧只能看到后一帧。
+ * 这里每拍用 LimelightHelpers.readPoseEstimateQueue 把每个相机排队的帧解析进预先分配的缓冲区，
+ * 没有监听线程，也没有每帧的事件、队列节点，只剩 NT 自己给的数组。
+ * sendAll 下 NT 时间戳每次送达都会变，不能拿来去重，改按这一帧自己的拍照时间（NT 时间 - latency）去重：
+ * 同一个相机拍照时间不增加，或者内容和上一帧完全一样（Limelight 重发同一帧）的都丢掉。
+ * 几个相机的帧合在一起按拍照时间从早到晚交出去。
+ *
+ * 主循环不取的时候（比如底盘转太快直接 return）每个相机最多留 kCapacity 帧，多了 NT 丢最老的。
+ */
+public class VisionFrameQueue {
+    private static final int kCapacity = 32;
+
+    private final String[] m_names;
+    private final String m_entryName;
+    private final boolean m_isMegaTag2;
+    private final DoubleArraySubscriber[] m_subscribers;
+
+    // 每个相机最近交出去的一帧，用来去重
+    private final PoseEstimateBuffer[] m_lastFrames;
+    private final boolean[] m_hasLastFrame;
+
+    // 这一批读出来还没交出去的帧，[m_pendingIndex, m_pendingCount) 按拍照时间排好
+    private final PoseEstimateBuffer[] m_pending;
+    private final int[] m_pendingCameras;
+    private int m_pendingCount = 0;
+    private int m_pendingIndex = 0;
+
+    private int m_duplicates = 0;
+    private int m_overflows = 0;
+    private int m_lastCamera = -1;
+
+    /**
+     * @param names 相机名字，poll 出来的相机下标就是在这个数组里的位置
+     * @param entryName 比如 botpose_orb_wpiblue
+     */
+    public VisionFrameQueue(String[] names, String entryName, boolean isMegaTag2) {
+        m_names = names.clone();
+        m_entryName = entryName;
+        m_isMegaTag2 = isMegaTag2;
+        m_subscribers = new DoubleArraySubscriber[names.length];
+        m_lastFrames = new PoseEstimateBuffer[names.length];
+        m_hasLastFrame = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            m_lastFrames[i] = new PoseEstimateBuffer();
+        }
+        m_pending = new PoseEstimateBuffer[kCapacity * names.length];
+        m_pendingCameras = new int[m_pending.length];
+        for (int i = 0; i < m_pending.length; i++) {
+            m_pending[i] = new PoseEstimateBuffer();
+        }
+    }
+
+    /**
+     * 订阅，重复调用无效
+     */
+    public void start() {
+        if (m_subscribers[0] != null) {
+            return;
+        }
+        for (int i = 0; i < m_names.length; i++) {
+            m_subscribers[i] = LimelightHelpers.getLimelightNTTable(m_names[i])
+                .getDoubleArrayTopic(m_entryName)
+                .subscribe(new double[0], PubSubOption.sendAll(true), PubSubOption.pollStorage(kCapacity));
+        }
+    }
+
+    public void stop() {
+        if (m_subscribers[0] == null) {
+            return;
+        }
+        for (int i = 0; i < m_names.length; i++) {
+            m_subscribers[i].close();
+            m_subscribers[i] = null;
+        }
+        m_pendingCount = 0;
+        m_pendingIndex = 0;
+    }
+
+    /**
+     * 取出拍照时间最早的一帧，拷到调用者的缓冲区里
+     * @return 没有新帧时返回 false；相机下标用 getLastCamera() 读
+     */
+    public boolean poll(PoseEstimateBuffer out) {
+        if (m_pendingIndex == m_pendingCount && !refill()) {
+            return false;
+        }
+        out.copyFrom(m_pending[m_pendingIndex]);
+        m_lastCamera = m_pendingCameras[m_pendingIndex];
+        m_pendingIndex++;
+        return true;
+    }
+
+    /**
+     * 把每个相机排队的帧读进 m_pending，去重后按拍照时间排序
+     * @return 读到了新帧
+     */
+    private boolean refill() {
+        m_pendingCount = 0;
+        m_pendingIndex = 0;
+        if (m_subscribers[0] == null) {
+            return false;
+        }
+        for (int camera = 0; camera < m_names.length; camera++) {
+            int start = m_pendingCount;
+            int read = LimelightHelpers.readPoseEstimateQueue(m_subscribers[camera], m_isMegaTag2, m_pending, start);
+            if (read >= kCapacity) {
+                // 读出来是满的，NT 可能已经丢掉了更老的帧
+                m_overflows++;
+            }
+            for (int i = start; i < start + read; i++) {
+                if (isDuplicate(camera, m_pending[i])) {
+                    m_duplicates++;
+                    continue;
+                }
+                // 留下的帧往前挪，缓冲区对调，不拷数据
+                PoseEstimateBuffer frame = m_pending[i];
+                m_pending[i] = m_pending[m_pendingCount];
+                m_pending[m_pendingCount] = frame;
+                m_pendingCameras[m_pendingCount] = camera;
+                m_pendingCount++;
+            }
+        }
+        // 帧数很少，插入排序
+        for (int i = 1; i < m_pendingCount; i++) {
+            PoseEstimateBuffer frame = m_pending[i];
+            int camera = m_pendingCameras[i];
+            int j = i - 1;
+            while (j >= 0 && m_pending[j].timestampSeconds > frame.timestampSeconds) {
+                m_pending[j + 1] = m_pending[j];
+                m_pendingCameras[j + 1] = m_pendingCameras[j];
+                j--;
+            }
+            m_pending[j + 1] = frame;
+            m_pendingCameras[j + 1] = camera;
+        }
+        return m_pendingCount > 0;
+    }
+
+    /**
+     * @return 这一帧以前收到过；没收到过时记下来
+     */
+    private boolean isDuplicate(int camera, PoseEstimateBuffer frame) {
+        PoseEstimateBuffer last = m_lastFrames[camera];
+        // timestampSeconds 已经是 NT 时间 - latency，见 LimelightHelpers.parsePoseEstimate
+        if (m_hasLastFrame[camera]
+                && (frame.timestampSeconds <= last.timestampSeconds || frame.sameMeasurement(last))) {
+            return true;
+        }
+        last.copyFrom(frame);
+        m_hasLastFrame[camera] = true;
+        return false;
+    }
+
+    /** @return 上一次 poll() 出来的帧是哪个相机的 */
+    public int getLastCamera() {
+        return m_lastCamera;
+    }
+
+    /** 丢掉所有还没取的帧 */
+    public void clear() {
+        m_pendingCount = 0;
+        m_pendingIndex = 0;
+        for (DoubleArraySubscriber subscriber : m_subscribers) {
+            if (subscriber != null) {
+                // 只是丢掉，不用时间戳
+                subscriber.readQueueValues();
+            }
+        }
+    }
+
+    /** @return 拍照时间没有增加或者内容重复被丢掉的帧数 */
+    public int getDuplicateCount() {
+        return m_duplicates;
+    }
+
+    /** @return 读出来队列是满的次数，这时 NT 可能已经丢掉了更老的帧 */
+    public int getOverflowCount() {
+        return m_overflows;
+    }
+}
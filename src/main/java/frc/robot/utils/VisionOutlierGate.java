@@ -0,0 +1,77 @@
+package frc.robot.utils;
+
+/**
+ * 视觉离群值剔除：视觉位姿和拍照那一刻的估计位姿比，马氏距离平方超过卡方门限就不要
+ *
+ * 两者都当成 x、y 独立的高斯，方差 = 视觉的 xyStdDev^2 + 估计器自己的 odometryStdDev^2，
+ * d^2 = (dx^2 + dy^2) / 方差，服从 2 自由度的卡方分布。朝向是 MegaTag2 从陀螺仪拿的，不参与。
+ * 同一个相机连续被拒 maxConsecutiveRejects 次时，更可能是里程计自己歪了（撞车、打滑），放一帧进去重新拉回来。
+ * 每个相机单独统计接受、拒绝的帧数和最近一次的马氏距离。
+ */
+public class VisionOutlierGate {
+    private final double m_odometryVariance;
+    private final double m_chiSquaredGate;
+    private final int m_maxConsecutiveRejects;
+
+    private final int[] m_acceptedCount;
+    private final int[] m_rejectedCount;
+    private final int[] m_consecutiveRejects;
+    private final double[] m_lastMahalanobis;
+
+    /**
+     * @param cameras 相机个数
+     * @param odometryStdDev 估计位姿的位置标准差（米）
+     * @param chiSquaredGate 马氏距离平方的门限
+     * @param maxConsecutiveRejects 同一相机连续拒这么多帧后放行一帧
+     */
+    public VisionOutlierGate(int cameras, double odometryStdDev, double chiSquaredGate, int maxConsecutiveRejects) {
+        m_odometryVariance = odometryStdDev * odometryStdDev;
+        m_chiSquaredGate = chiSquaredGate;
+        m_maxConsecutiveRejects = maxConsecutiveRejects;
+        m_acceptedCount = new int[cameras];
+        m_rejectedCount = new int[cameras];
+        m_consecutiveRejects = new int[cameras];
+        m_lastMahalanobis = new double[cameras];
+    }
+
+    /**
+     * 没法比（关掉了剔除，或者历史里没有拍照的时间）时直接接受
+     */
+    public boolean accept(int camera) {
+        m_consecutiveRejects[camera] = 0;
+        m_acceptedCount[camera]++;
+        return true;
+    }
+
+    /**
+     * @param visionX 视觉位姿（米）
+     * @param odomX 拍照那一刻的估计位姿（米）
+     * @param xyStdDev 这一帧视觉的位置标准差（米）
+     * @return 被拒时返回 false
+     */
+    public boolean test(int camera, double visionX, double visionY, double odomX, double odomY, double xyStdDev) {
+        double dx = visionX - odomX;
+        double dy = visionY - odomY;
+        double mahalanobis = (dx * dx + dy * dy) / (xyStdDev * xyStdDev + m_odometryVariance);
+        m_lastMahalanobis[camera] = mahalanobis;
+
+        if (mahalanobis > m_chiSquaredGate && m_consecutiveRejects[camera] < m_maxConsecutiveRejects) {
+            m_consecutiveRejects[camera]++;
+            m_rejectedCount[camera]++;
+            return false;
+        }
+        return accept(camera);
+    }
+
+    public int getAcceptedCount(int camera) {
+        return m_acceptedCount[camera];
+    }
+
+    public int getRejectedCount(int camera) {
+        return m_rejectedCount[camera];
+    }
+
+    public double getLastMahalanobis(int camera) {
+        return m_lastMahalanobis[camera];
+    }
+}
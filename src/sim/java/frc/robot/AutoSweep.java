@@ -0,0 +1,270 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量给 auto 打分：所有 auto × 起点偏差 × 视觉噪声，每一组扰动开一个独立的 JVM 跑 HeadlessSim，多核并行
+ *
+ * HAL、CommandScheduler、NT 都是进程内单例，同一个 JVM 里没法并行跑两台机器人，所以用子进程隔离。
+ * 每个子进程跑完一组扰动下的全部 auto，写自己的 summary.csv；全部结束后汇总成 ranking.csv：
+ * 按起始位置（联盟 + 位置，比如 Red_DT）分组，组内按 完成率、完成时间、射击次数、路径跟随误差 排序。
+ *
+ * 运行：gradlew sweepAutos，参数：
+ *   --workers=n     同时跑几个 JVM，默认 CPU 核数的一半（每个仿真本身还有 Notifier 线程）
+ *   --seeds=n       每组扰动用几个视觉噪声种子，默认 1
+ *   其余参数当作 auto 名字，只跑这些
+ * 和 HeadlessSim 一样在 sim source set 里，不部署到机器人。
+ */
+public final class AutoSweep {
+    private static final String kOutputDir = "build/auto-sweep";
+    private static final double kAutoDuration = 15.0;
+
+    /** 起点偏差（米，米，度） */
+    private static final double[][] kStartOffsets = {
+        { 0, 0, 0 },
+        { 0.15, 0, 0 }, { -0.15, 0, 0 },
+        { 0, 0.15, 0 }, { 0, -0.15, 0 },
+        { 0, 0, 5 }, { 0, 0, -5 },
+    };
+    /** 视觉噪声标准差（米），负数表示不喂视觉 */
+    private static final double[] kVisionNoise = { -1, 0.03, 0.1 };
+
+    private AutoSweep() {}
+
+    private static class Variant {
+        int index;
+        double[] offset;
+        double visionNoise;
+        long seed;
+        File dir;
+    }
+
+    private static class Score {
+        String auto;
+        String group;
+        int runs;
+        int errors;
+        int finished;
+        double finishTimeTotal;
+        double shotsTotal;
+        double firstShotTotal;
+        int firstShotRuns;
+        double pathErrorTotal;
+        double pathErrorMax;
+
+        double completionRate() {
+            return runs == 0 ? 0 : (double) finished / runs;
+        }
+
+        /** 没跑完的按整个 auto 时长算 */
+        double meanFinishTime() {
+            return runs == 0 ? kAutoDuration : (finishTimeTotal + (runs - finished) * kAutoDuration) / runs;
+        }
+
+        /** 出错的运行没有射击次数和路径误差，这两项只在正常跑完的运行上平均 */
+        int completedRuns() {
+            return runs - errors;
+        }
+
+        /** 全部出错时是 NaN，排序时排在最后 */
+        double meanShots() {
+            return completedRuns() == 0 ? Double.NaN : shotsTotal / completedRuns();
+        }
+
+        double meanFirstShot() {
+            return firstShotRuns == 0 ? Double.NaN : firstShotTotal / firstShotRuns;
+        }
+
+        double meanPathError() {
+            return completedRuns() == 0 ? Double.NaN : pathErrorTotal / completedRuns();
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int seeds = 1;
+        ArrayList<String> autos = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--workers=")) {
+                workers = Math.max(1, Integer.parseInt(arg.substring("--workers=".length())));
+            } else if (arg.startsWith("--seeds=")) {
+                seeds = Math.max(1, Integer.parseInt(arg.substring("--seeds=".length())));
+            } else {
+                autos.add(arg);
+            }
+        }
+
+        List<Variant> variants = buildVariants(seeds);
+        System.out.printf(Locale.ROOT, "%d variants, %d workers%n", variants.size(), workers);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ArrayList<Future<Integer>> futures = new ArrayList<>();
+        for (Variant variant : variants) {
+            futures.add(pool.submit(() -> runWorker(variant, autos)));
+        }
+        int failedWorkers = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            int exit = futures.get(i).get();
+            if (exit != 0) {
+                failedWorkers++;
+                System.out.printf(Locale.ROOT, "variant %d exited with %d, see %s%n", i, exit,
+                    new File(variants.get(i).dir, "worker.log"));
+            }
+        }
+        pool.shutdown();
+
+        Map<String, Score> scores = collect(variants);
+        writeRanking(scores);
+        System.out.printf(Locale.ROOT, "sweep finished in %.1f s%n", (System.nanoTime() - start) * 1e-9);
+        System.exit(failedWorkers == 0 ? 0 : 1);
+    }
+
+    private static List<Variant> buildVariants(int seeds) {
+        ArrayList<Variant> variants = new ArrayList<>();
+        for (double[] offset : kStartOffsets) {
+            for (double noise : kVisionNoise) {
+                // 不喂视觉时种子没有意义，只跑一次
+                int n = noise < 0 ? 1 : seeds;
+                for (int s = 0; s < n; s++) {
+                    Variant v = new Variant();
+                    v.index = variants.size();
+                    v.offset = offset;
+                    v.visionNoise = noise;
+                    v.seed = s;
+                    v.dir = new File(kOutputDir, String.format(Locale.ROOT, "v%03d", v.index));
+                    variants.add(v);
+                }
+            }
+        }
+        return variants;
+    }
+
+    private static int runWorker(Variant variant, List<String> autos) throws IOException, InterruptedException {
+        variant.dir.mkdirs();
+        ArrayList<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        String libraryPath = System.getProperty("java.library.path");
+        if (libraryPath != null) {
+            command.add("-Djava.library.path=" + libraryPath);
+        }
+        command.add(HeadlessSim.class.getName());
+        command.add("--out=" + variant.dir.getPath());
+        command.add(String.format(Locale.ROOT, "--start-offset=%f,%f,%f", variant.offset[0], variant.offset[1], variant.offset[2]));
+        if (variant.visionNoise >= 0) {
+            command.add(String.format(Locale.ROOT, "--vision-noise=%f", variant.visionNoise));
+        }
+        command.add("--seed=" + variant.seed);
+        command.addAll(autos);
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(new File(variant.dir, "worker.log"))
+            .start();
+        return process.waitFor();
+    }
+
+    private static Map<String, Score> collect(List<Variant> variants) throws IOException {
+        LinkedHashMap<String, Score> scores = new LinkedHashMap<>();
+        for (Variant variant : variants) {
+            File summary = new File(variant.dir, "summary.csv");
+            if (!summary.exists()) {
+                continue;
+            }
+            List<String> lines = Files.readAllLines(summary.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                continue;
+            }
+            List<String> header = List.of(lines.get(0).split(","));
+            for (String line : lines.subList(1, lines.size())) {
+                String[] cells = line.split(",", -1);
+                String auto = cells[header.indexOf("auto")];
+                Score score = scores.computeIfAbsent(auto, name -> {
+                    Score s = new Score();
+                    s.auto = name;
+                    s.group = startGroup(name);
+                    return s;
+                });
+                score.runs++;
+                if (!cells[header.indexOf("error")].isEmpty()) {
+                    score.errors++;
+                    continue;
+                }
+                if (Boolean.parseBoolean(cells[header.indexOf("finished")])) {
+                    score.finished++;
+                    score.finishTimeTotal += Double.parseDouble(cells[header.indexOf("finishTime")]);
+                }
+                score.shotsTotal += Double.parseDouble(cells[header.indexOf("shootingWindows")]);
+                double firstShot = Double.parseDouble(cells[header.indexOf("firstShotTime")]);
+                if (!Double.isNaN(firstShot)) {
+                    score.firstShotTotal += firstShot;
+                    score.firstShotRuns++;
+                }
+                double pathErrorMax = Double.parseDouble(cells[header.indexOf("pathErrorMax")]);
+                score.pathErrorTotal += Double.parseDouble(cells[header.indexOf("pathErrorAvg")]);
+                score.pathErrorMax = Math.max(score.pathErrorMax, pathErrorMax);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * auto 名字 -> 起始位置分组，比如 Red__UB_A_SHOOT -> Red_UB，blue_centre -> Blue_centre，
+     * 认不出来的（pp、AUTOSHOOT）归到 other
+     */
+    static String startGroup(String autoName) {
+        String[] tokens = autoName.split("_+");
+        String lower = autoName.toLowerCase(Locale.ROOT);
+        String alliance = lower.startsWith("blue") ? "Blue" : lower.startsWith("red") ? "Red" : null;
+        if (alliance == null || tokens.length < 2 || !tokens[0].equalsIgnoreCase(alliance)) {
+            return "other";
+        }
+        return alliance + "_" + tokens[1];
+    }
+
+    private static void writeRanking(Map<String, Score> scores) throws IOException {
+        Comparator<Score> order = Comparator
+            .comparingDouble((Score s) -> -s.completionRate())
+            .thenComparingDouble(Score::meanFinishTime)
+            .thenComparingDouble(s -> -s.meanShots())
+            .thenComparingDouble(Score::meanPathError);
+        ArrayList<Score> ranked = new ArrayList<>(scores.values());
+        ranked.sort(Comparator.comparing((Score s) -> s.group).thenComparing(order));
+
+        new File(kOutputDir).mkdirs();
+        try (PrintWriter out = new PrintWriter(new File(kOutputDir, "ranking.csv"), StandardCharsets.UTF_8)) {
+            out.println("group,rank,auto,runs,errors,completionRate,meanFinishTime,meanShots,meanFirstShot,meanPathError,maxPathError");
+            String group = null;
+            int rank = 0;
+            for (Score s : ranked) {
+                if (!s.group.equals(group)) {
+                    group = s.group;
+                    rank = 0;
+                }
+                rank++;
+                out.printf(Locale.ROOT, "%s,%d,%s,%d,%d,%.2f,%.2f,%.2f,%.2f,%.3f,%.3f%n", s.group, rank, s.auto, s.runs,
+                    s.errors, s.completionRate(), s.meanFinishTime(), s.meanShots(), s.meanFirstShot(),
+                    s.meanPathError(), s.pathErrorMax);
+                if (rank == 1) {
+                    System.out.printf(Locale.ROOT, "%-12s best: %-20s finish %.2f s, %.1f shots, path error %.3f m%n",
+                        s.group, s.auto, s.meanFinishTime(), s.meanShots(), s.meanPathError());
+                }
+            }
+        }
+    }
+}
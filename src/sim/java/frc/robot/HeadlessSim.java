@@ -0,0 +1,302 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+import com.ctre.phoenix6.Utils;
+import com.pathplanner.lib.util.PathPlannerLogging;
+
+/**
+ * 无界面、比实时快的整机仿真：一个一个跑 deploy/pathplanner/autos 下的 auto，记录位姿、射击和耗时
+ *
+ * 用 HAL 仿真启动 Robot（和 Main 一样的构造），SimHooks.pauseTiming() 之后仿真时间只由 stepTiming 推进，
+ * 这里直接按 TimedRobot 的顺序调用 autonomousPeriodic / robotPeriodic / simulationPeriodic，每步 20ms，
+ * stepTiming 会等底盘和 MechanismSim 的 Notifier 跑完，所以速度只受 CPU 限制。
+ *
+ * 仿真里里程计没有误差，所以另外积分一个"真实位姿"：从 auto 起点加上 --start-offset 出发，
+ * 按底盘实际速度积分。里程计还是从 auto 起点开始，两者的差就是开局摆位误差；
+ * 打开 --vision-noise 时每 0.1 秒把真实位姿加高斯噪声当视觉测量喂给 addVisionMeasurement。
+ * 路径跟随误差 = 真实位姿到 PathPlanner 目标位姿的距离。
+ *
+ * 输出（默认 build/headless-sim/）：
+ * - summary.csv：每个 auto 一行
+ * - <auto>.csv：每一帧的位姿和射击状态
+ * 有 auto 抛异常时进程返回 1。
+ *
+ * 在 src/sim/java 里（单独的 sim source set），不会打进部署到机器人的 jar。
+ *
+ * 运行：gradlew simAutos，或者 gradlew simAutos --args="Red_DT_C_SHOOT blue_centre" 只跑指定的
+ * 参数：
+ *   --out=目录
+ *   --start-offset=dx,dy,deg   真实起点相对 auto 起点的偏差（米，米，度）
+ *   --vision-noise=sigma       视觉测量的位置标准差（米），不给就不喂视觉
+ *   --seed=n                   视觉噪声的随机种子
+ */
+public final class HeadlessSim {
+    private static final double kLoopPeriod = 0.02;
+    private static final double kAutoDuration = 15.0;
+    private static final double kVisionPeriod = 0.1;
+
+    private static String s_outputDir = "build/headless-sim";
+    private static double s_offsetX = 0;
+    private static double s_offsetY = 0;
+    private static double s_offsetDeg = 0;
+    private static double s_visionNoise = -1;
+    private static long s_seed = 0;
+
+    private static volatile Pose2d s_targetPose = null;
+
+    private HeadlessSim() {}
+
+    private static class Result {
+        String name;
+        boolean error;
+        String errorMessage = "";
+        boolean finished;
+        double finishTime = Double.NaN;
+        double pathLength;
+        double pathErrorAvg;
+        double pathErrorMax;
+        double poseErrorFinal;
+        double maxSpeed;
+        Pose2d startPose;
+        Pose2d finalPose;
+        int shootingWindows;
+        double shootingTime;
+        double firstShotTime = Double.NaN;
+        double wallSeconds;
+        double maxLoopMs;
+        double avgLoopMs;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("HAL 初始化失败");
+        }
+        SimHooks.pauseTiming();
+        DriverStationSim.setAllianceStationId(Constants.alliance == Alliance.Blue ? AllianceStationID.Blue1 : AllianceStationID.Red1);
+        DriverStationSim.setDsAttached(true);
+        setMode(false, false);
+
+        Robot robot = new Robot();
+        robot.simulationInit();
+        robot.disabledInit();
+
+        List<String> autos = parseArgs(args);
+        if (autos.isEmpty()) {
+            autos = listAutos();
+        }
+        new File(s_outputDir).mkdirs();
+        PathPlannerLogging.setLogTargetPoseCallback(pose -> s_targetPose = pose);
+        ArrayList<Result> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (String auto : autos) {
+            Result result = runAuto(robot, auto);
+            results.add(result);
+            System.out.printf(Locale.ROOT, "%-24s %s  %.1fx real time%n", auto,
+                result.error ? "ERROR " + result.errorMessage : (result.finished ? "finished" : "timeout"),
+                kAutoDuration / result.wallSeconds);
+        }
+        writeSummary(results);
+        double wall = (System.nanoTime() - start) * 1e-9;
+        System.out.printf(Locale.ROOT, "%d autos, %.1f s simulated in %.1f s wall (%.1fx)%n",
+            results.size(), results.size() * kAutoDuration, wall, results.size() * kAutoDuration / wall);
+
+        boolean anyError = results.stream().anyMatch(r -> r.error);
+        HAL.shutdown();
+        System.exit(anyError ? 1 : 0);
+    }
+
+    private static List<String> parseArgs(String... args) {
+        ArrayList<String> autos = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                s_outputDir = arg.substring("--out=".length());
+            } else if (arg.startsWith("--start-offset=")) {
+                String[] parts = arg.substring("--start-offset=".length()).split(",");
+                s_offsetX = Double.parseDouble(parts[0]);
+                s_offsetY = Double.parseDouble(parts[1]);
+                s_offsetDeg = Double.parseDouble(parts[2]);
+            } else if (arg.startsWith("--vision-noise=")) {
+                s_visionNoise = Double.parseDouble(arg.substring("--vision-noise=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                s_seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else {
+                autos.add(arg);
+            }
+        }
+        return autos;
+    }
+
+    private static List<String> listAutos() {
+        File dir = new File(Filesystem.getDeployDirectory(), "pathplanner/autos");
+        String[] files = dir.list((d, name) -> name.endsWith(".auto"));
+        ArrayList<String> autos = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (String file : files) {
+                autos.add(file.substring(0, file.length() - ".auto".length()));
+            }
+        }
+        return autos;
+    }
+
+    private static void setMode(boolean enabled, boolean autonomous) {
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+
+    private static Result runAuto(Robot robot, String autoName) throws IOException {
+        Result result = new Result();
+        result.name = autoName;
+        RobotContainer container = robot.m_robotContainer;
+        CommandScheduler.getInstance().cancelAll();
+
+        try (PrintWriter trace = new PrintWriter(new File(s_outputDir, autoName + ".csv"), StandardCharsets.UTF_8)) {
+            trace.println("time,x,y,headingDeg,vx,vy,trueX,trueY,targetX,targetY,isShooting");
+            container.selectAuto(autoName);
+            Command autoCommand = container.getAutonomousCommand();
+
+            setMode(true, true);
+            s_targetPose = null;
+            robot.autonomousInit();
+
+            Pose2d start = container.drivetrain.getPose();
+            Pose2d truth = new Pose2d(start.getX() + s_offsetX, start.getY() + s_offsetY,
+                start.getRotation().plus(Rotation2d.fromDegrees(s_offsetDeg)));
+            Random random = new Random(s_seed ^ autoName.hashCode());
+            double nextVision = 0;
+            double errorTotal = 0;
+            int errorSamples = 0;
+
+            double loopTotal = 0;
+            int loops = 0;
+            boolean wasShooting = false;
+            Pose2d last = null;
+            long wallStart = System.nanoTime();
+            for (double t = 0; t < kAutoDuration; t += kLoopPeriod) {
+                long loopStart = System.nanoTime();
+                // IterativeRobotBase.loopFunc 的顺序：模式的 periodic、robotPeriodic、simulationPeriodic
+                robot.autonomousPeriodic();
+                robot.robotPeriodic();
+                robot.simulationPeriodic();
+                double loopMs = (System.nanoTime() - loopStart) * 1e-6;
+                loopTotal += loopMs;
+                loops++;
+                result.maxLoopMs = Math.max(result.maxLoopMs, loopMs);
+
+                SimHooks.stepTiming(kLoopPeriod);
+
+                Pose2d pose = container.drivetrain.getPose();
+                var speeds = container.drivetrain.getSpeeds();
+                truth = truth.exp(new Twist2d(speeds.vxMetersPerSecond * kLoopPeriod,
+                    speeds.vyMetersPerSecond * kLoopPeriod, speeds.omegaRadiansPerSecond * kLoopPeriod));
+
+                if (s_visionNoise >= 0 && t >= nextVision) {
+                    nextVision = t + kVisionPeriod;
+                    double sigma = Math.max(0.02, s_visionNoise);
+                    Pose2d measured = new Pose2d(truth.getX() + random.nextGaussian() * s_visionNoise,
+                        truth.getY() + random.nextGaussian() * s_visionNoise, truth.getRotation());
+                    container.drivetrain.addVisionMeasurement(measured, Utils.getCurrentTimeSeconds(),
+                        VecBuilder.fill(sigma, sigma, 999999.0));
+                }
+
+                Pose2d target = s_targetPose;
+                boolean following = autoCommand != null && autoCommand.isScheduled() && target != null;
+                if (following) {
+                    double error = truth.getTranslation().getDistance(target.getTranslation());
+                    errorTotal += error;
+                    errorSamples++;
+                    result.pathErrorMax = Math.max(result.pathErrorMax, error);
+                }
+
+                if (last == null) {
+                    result.startPose = pose;
+                } else {
+                    double step = pose.getTranslation().getDistance(last.getTranslation());
+                    result.pathLength += step;
+                    result.maxSpeed = Math.max(result.maxSpeed, step / kLoopPeriod);
+                }
+                last = pose;
+
+                boolean shooting = SmartDashboard.getBoolean("isShooting", false);
+                if (shooting) {
+                    result.shootingTime += kLoopPeriod;
+                    if (!wasShooting) {
+                        result.shootingWindows++;
+                        if (Double.isNaN(result.firstShotTime)) {
+                            result.firstShotTime = t;
+                        }
+                    }
+                }
+                wasShooting = shooting;
+
+                if (!result.finished && autoCommand != null && !autoCommand.isScheduled()) {
+                    result.finished = true;
+                    result.finishTime = t;
+                }
+
+                trace.printf(Locale.ROOT, "%.3f,%.4f,%.4f,%.2f,%.3f,%.3f,%.4f,%.4f,%s,%s,%d%n", t, pose.getX(), pose.getY(),
+                    pose.getRotation().getDegrees(), speeds.vxMetersPerSecond, speeds.vyMetersPerSecond,
+                    truth.getX(), truth.getY(), following ? String.format(Locale.ROOT, "%.4f", target.getX()) : "",
+                    following ? String.format(Locale.ROOT, "%.4f", target.getY()) : "", shooting ? 1 : 0);
+            }
+            result.wallSeconds = (System.nanoTime() - wallStart) * 1e-9;
+            result.avgLoopMs = loops == 0 ? 0 : loopTotal / loops;
+            result.finalPose = last;
+            result.pathErrorAvg = errorSamples == 0 ? 0 : errorTotal / errorSamples;
+            result.poseErrorFinal = last == null ? 0 : last.getTranslation().getDistance(truth.getTranslation());
+        } catch (RuntimeException e) {
+            result.error = true;
+            result.errorMessage = e.toString().replace(',', ';').replace('"', '\'');
+            e.printStackTrace();
+        } finally {
+            setMode(false, false);
+            robot.autonomousExit();
+            robot.disabledInit();
+            CommandScheduler.getInstance().cancelAll();
+            SimHooks.stepTiming(kLoopPeriod);
+        }
+        return result;
+    }
+
+    private static void writeSummary(List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(new File(s_outputDir, "summary.csv"), StandardCharsets.UTF_8)) {
+            out.println("auto,error,finished,finishTime,startX,startY,finalX,finalY,finalHeadingDeg,pathLength,maxSpeed,"
+                + "pathErrorAvg,pathErrorMax,poseErrorFinal,"
+                + "shootingWindows,shootingTime,firstShotTime,wallSeconds,speedup,avgLoopMs,maxLoopMs");
+            for (Result r : results) {
+                Pose2d s = r.startPose != null ? r.startPose : new Pose2d();
+                Pose2d f = r.finalPose != null ? r.finalPose : new Pose2d();
+                out.printf(Locale.ROOT, "%s,%s,%b,%.2f,%.3f,%.3f,%.3f,%.3f,%.1f,%.2f,%.2f,%.3f,%.3f,%.3f,%d,%.2f,%.2f,%.2f,%.1f,%.3f,%.3f%n",
+                    r.name, r.errorMessage, r.finished, r.finishTime,
+                    s.getX(), s.getY(), f.getX(), f.getY(), f.getRotation().getDegrees(), r.pathLength, r.maxSpeed,
+                    r.pathErrorAvg, r.pathErrorMax, r.poseErrorFinal,
+                    r.shootingWindows, r.shootingTime, r.firstShotTime, r.wallSeconds,
+                    r.wallSeconds > 0 ? kAutoDuration / r.wallSeconds : 0, r.avgLoopMs, r.maxLoopMs);
+            }
+        }
+    }
+}
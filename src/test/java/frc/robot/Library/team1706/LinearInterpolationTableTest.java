@@ -0,0 +1,86 @@
+package frc.robot.Library.team1706;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 两种查找方式和原来的逐点扫描逐位相同（包括正好落在标定点上和超出范围外推的情况）
+ */
+class LinearInterpolationTableTest {
+    private static final int SAMPLES = 200000;
+
+    /** 改之前的 getOutput */
+    private static double scan(Point2D[] points, double input) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Point2D p : points) {
+            min = Math.min(min, p.getX());
+            max = Math.max(max, p.getX());
+        }
+        int index = 0;
+        if (input <= min) {
+            index = 0;
+        } else if (input >= max) {
+            index = points.length - 2;
+        } else {
+            for (int i = 1; i < points.length; i++) {
+                if (input > points[i - 1].getX() && input <= points[i].getX()) {
+                    index = i - 1;
+                }
+            }
+        }
+        return LinearInterpolationTable.interpolate(input, points[index], points[index + 1]);
+    }
+
+    private static Point2D[] table(double... xy) {
+        Point2D[] points = new Point2D[xy.length / 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point2D.Double(xy[2 * i], xy[2 * i + 1]);
+        }
+        return points;
+    }
+
+    private static void check(Point2D[] points) {
+        LinearInterpolationTable binary = new LinearInterpolationTable(LinearInterpolationTable.LookupMode.BINARY_SEARCH, points);
+        LinearInterpolationTable grid = new LinearInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, points);
+        double min = points[0].getX();
+        double max = points[points.length - 1].getX();
+        double span = max - min;
+        Random random = new Random(5515);
+        for (int i = 0; i < SAMPLES; i++) {
+            double input;
+            if (i % 4 == 0) {
+                // 正好在标定点上，或者紧挨着
+                double x = points[random.nextInt(points.length)].getX();
+                input = i % 8 == 0 ? x : Math.nextUp(x);
+            } else {
+                input = min - 0.2 * span + random.nextDouble() * 1.4 * span;
+            }
+            long expected = Double.doubleToLongBits(scan(points, input));
+            assertEquals(expected, Double.doubleToLongBits(binary.getOutput(input)), "binary search at " + input);
+            assertEquals(expected, Double.doubleToLongBits(grid.getOutput(input)), "uniform grid at " + input);
+        }
+    }
+
+    @Test
+    void matchesLinearScan() {
+        // kRPMPoints 的形状：两端很远的平台 + 中间 0.5m 一个点
+        check(table(-100, 46.97, 1.5, 46.97, 2, 53, 2.5, 55, 3, 63.75, 3.5, 63.75, 4, 70.07, 100, 70.07));
+        // 不等间距
+        check(table(0, 1, 0.1, 3, 0.15, -2, 1.7, 4, 2.0, 4, 9.5, 0.5));
+        // 只有一段
+        check(table(1, 2, 3, 8));
+    }
+
+    @Test
+    void gridFallsBackWhenTooFine() {
+        Point2D[] points = table(0, 0, 1e-6, 1, 100, 2);
+        LinearInterpolationTable grid = new LinearInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, points);
+        assertEquals(LinearInterpolationTable.LookupMode.BINARY_SEARCH, grid.getLookupMode());
+        check(points);
+    }
+}
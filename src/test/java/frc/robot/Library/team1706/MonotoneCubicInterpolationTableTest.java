@@ -0,0 +1,129 @@
+package frc.robot.Library.team1706;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.ShooterConstants;
+
+/**
+ * PCHIP 表：经过标定点，单调数据插出来也单调、相邻两点之间不过冲，getDerivative 和数值差分一致，
+ * 超出范围按端点的值和斜率线性外推。kRPMTable / kShotTimeTable 直接决定飞轮转速，一起检查
+ */
+class MonotoneCubicInterpolationTableTest {
+    private static final int STEPS_PER_SEGMENT = 2000;
+
+    private static Point2D[] table(double... xy) {
+        Point2D[] points = new Point2D[xy.length / 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point2D.Double(xy[2 * i], xy[2 * i + 1]);
+        }
+        return points;
+    }
+
+    /** 测试用的表：平台 + 陡坡、不等间距的单调表、有极值的表、只有一段 */
+    private static MonotoneCubicInterpolationTable[] tables() {
+        Point2D[] steps = table(-100, 46.97, 1.5, 46.97, 2, 53, 2.5, 55, 3, 63.75, 3.5, 63.75, 4, 70.07, 100, 70.07);
+        Point2D[] uneven = table(0, 0.2, 0.1, 0.25, 0.15, 0.9, 1.7, 1.0, 2.0, 1.3, 9.5, 1.31);
+        Point2D[] wavy = table(0, 1, 0.1, 3, 0.15, -2, 1.7, 4, 2.0, 4, 9.5, 0.5);
+        Point2D[] single = table(1, 2, 3, 8);
+        return new MonotoneCubicInterpolationTable[] {
+            ShooterConstants.kRPMTable,
+            ShooterConstants.kShotTimeTable,
+            new MonotoneCubicInterpolationTable(steps),
+            new MonotoneCubicInterpolationTable(LinearInterpolationTable.LookupMode.UNIFORM_GRID, steps),
+            new MonotoneCubicInterpolationTable(uneven),
+            new MonotoneCubicInterpolationTable(wavy),
+            new MonotoneCubicInterpolationTable(single),
+        };
+    }
+
+    @Test
+    void passesThroughPoints() {
+        for (MonotoneCubicInterpolationTable table : tables()) {
+            double[] xs = table.getX();
+            double[] ys = table.getY();
+            for (int i = 0; i < table.size; i++) {
+                assertEquals(ys[i], table.getOutput(xs[i]), 1e-9, "x = " + xs[i]);
+            }
+        }
+    }
+
+    @Test
+    void staysMonotoneBetweenPoints() {
+        for (MonotoneCubicInterpolationTable table : tables()) {
+            double[] xs = table.getX();
+            double[] ys = table.getY();
+            for (int i = 0; i < table.size - 1; i++) {
+                double lo = Math.min(ys[i], ys[i + 1]);
+                double hi = Math.max(ys[i], ys[i + 1]);
+                double direction = Math.signum(ys[i + 1] - ys[i]);
+                double previous = ys[i];
+                for (int k = 1; k <= STEPS_PER_SEGMENT; k++) {
+                    double x = xs[i] + (xs[i + 1] - xs[i]) * k / STEPS_PER_SEGMENT;
+                    double y = table.getOutput(x);
+                    String at = "segment " + i + " x = " + x;
+                    // 不过冲：在这一段两端的值之间
+                    assertTrue(y >= lo - 1e-9 && y <= hi + 1e-9, at + " y = " + y);
+                    // 每一段都和两端的差同方向单调（平台上不动）
+                    assertTrue((y - previous) * direction >= -1e-9, at + " y = " + y + " after " + previous);
+                    if (direction == 0.0) {
+                        assertEquals(ys[i], y, 1e-9, at);
+                    }
+                    previous = y;
+                }
+            }
+        }
+    }
+
+    @Test
+    void derivativeMatchesFiniteDifference() {
+        double h = 1e-6;
+        for (MonotoneCubicInterpolationTable table : tables()) {
+            double[] xs = table.getX();
+            for (int i = 0; i < table.size - 1; i++) {
+                for (int k = 1; k < 50; k++) {
+                    double x = xs[i] + (xs[i + 1] - xs[i]) * k / 50.0;
+                    double numeric = (table.getOutput(x + h) - table.getOutput(x - h)) / (2 * h);
+                    double derivative = table.getDerivative(x);
+                    assertEquals(numeric, derivative, 1e-5 * Math.max(1.0, Math.abs(numeric)), "x = " + x);
+                }
+            }
+            // 标定点上二阶导数不连续，差分不准；改成检查一阶导数两侧连续
+            for (int i = 1; i < table.size - 1; i++) {
+                double derivative = table.getDerivative(xs[i]);
+                double tolerance = 1e-5 * Math.max(1.0, Math.abs(derivative));
+                assertEquals(derivative, table.getDerivative(xs[i] - 1e-12), tolerance, "left of x = " + xs[i]);
+                assertEquals(derivative, table.getDerivative(xs[i] + 1e-12), tolerance, "right of x = " + xs[i]);
+            }
+        }
+    }
+
+    @Test
+    void extrapolatesLinearlyPastEnds() {
+        for (MonotoneCubicInterpolationTable table : tables()) {
+            double[] xs = table.getX();
+            double[] ys = table.getY();
+            double first = xs[0];
+            double last = xs[table.size - 1];
+            double span = last - first;
+            double firstSlope = table.getDerivative(first);
+            double lastSlope = table.getDerivative(last);
+            for (double d : new double[] { 1e-3, 0.1, 0.5, 2.0 }) {
+                double before = first - d * span;
+                double after = last + d * span;
+                assertEquals(ys[0] + (before - first) * firstSlope, table.getOutput(before), 1e-9, "x = " + before);
+                assertEquals(ys[table.size - 1] + (after - last) * lastSlope, table.getOutput(after), 1e-9, "x = " + after);
+                // 外推部分斜率不变，等于端点的斜率
+                assertEquals(firstSlope, table.getDerivative(before), 0.0, "x = " + before);
+                assertEquals(lastSlope, table.getDerivative(after), 0.0, "x = " + after);
+            }
+            // 端点两侧斜率连续
+            assertEquals(firstSlope, table.getDerivative(first + 1e-12), 1e-5 * Math.max(1.0, Math.abs(firstSlope)), "first");
+            assertEquals(lastSlope, table.getDerivative(last - 1e-12), 1e-5 * Math.max(1.0, Math.abs(lastSlope)), "last");
+        }
+    }
+}
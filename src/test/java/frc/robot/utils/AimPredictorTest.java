@@ -0,0 +1,109 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.subsystems.TurrentSubsystem;
+import frc.robot.subsystems.TurrentSubsystem.TurrentConst;
+
+/**
+ * 机器人绕圈跑（边跑边自转），位姿延迟 + 执行延迟之后炮台实际指的方向和那一刻应该指的方向之差：
+ * 开补偿（AimPredictor 外推）要比直接用过时的位姿小得多
+ */
+class AimPredictorTest {
+    private static final double kPoseAge = 0.04;
+    private static final double kDelay = 0.06;
+    private static final Translation2d kTarget = new Translation2d(11.969, 4.021);
+
+    /** 圆周运动的真值，alpha = 0 */
+    private static class Circle implements KinematicStateEstimator.View {
+        final double cx, cy, radius, rate, heading0, spin;
+        double t;
+
+        Circle(double cx, double cy, double radius, double rate, double heading0, double spin) {
+            this.cx = cx;
+            this.cy = cy;
+            this.radius = radius;
+            this.rate = rate;
+            this.heading0 = heading0;
+            this.spin = spin;
+        }
+
+        double x(double time) { return cx + radius * Math.cos(rate * time); }
+        double y(double time) { return cy + radius * Math.sin(rate * time); }
+        double heading(double time) { return heading0 + spin * time; }
+        Pose2d pose(double time) { return new Pose2d(x(time), y(time), new Rotation2d(heading(time))); }
+
+        public double getTimestamp() { return t; }
+        public double getVx() { return -radius * rate * Math.sin(rate * t); }
+        public double getVy() { return radius * rate * Math.cos(rate * t); }
+        public double getOmega() { return spin; }
+        public double getAx() { return -radius * rate * rate * Math.cos(rate * t); }
+        public double getAy() { return -radius * rate * rate * Math.sin(rate * t); }
+        public double getAlpha() { return 0.0; }
+    }
+
+    private static double angleError(double a, double b) {
+        return Math.abs(MathUtil.inputModulus(a - b, -180, 180));
+    }
+
+    /** @return [不补偿的最大误差, 补偿后的最大误差]（度） */
+    private static double[] trackingError(Circle circle) {
+        AimPredictor predictor = new AimPredictor(kDelay);
+        predictor.setTurretOffset(TurrentConst.turrentOffset.getX(), TurrentConst.turrentOffset.getY());
+        double raw = 0.0;
+        double compensated = 0.0;
+        for (double now = 0.0; now < 2 * Math.PI / Math.abs(circle.rate); now += 0.02) {
+            // 拿到的是 kPoseAge 之前的位姿，指令 kDelay 之后才到位
+            circle.t = now - kPoseAge;
+            Pose2d measured = circle.pose(circle.t);
+            double ideal = TurrentSubsystem.calcTurrentAngle(circle.pose(now + kDelay), kTarget);
+
+            raw = Math.max(raw, angleError(TurrentSubsystem.calcTurrentAngle(measured, kTarget), ideal));
+
+            predictor.predict(measured.getX(), measured.getY(), measured.getRotation().getRadians(), circle, now);
+            Pose2d predicted = new Pose2d(predictor.getX(), predictor.getY(), new Rotation2d(predictor.getHeading()));
+            compensated = Math.max(compensated, angleError(TurrentSubsystem.calcTurrentAngle(predicted, kTarget), ideal));
+        }
+        return new double[] { raw, compensated };
+    }
+
+    @Test
+    void compensationReducesLagOnCircles() {
+        Circle[] circles = {
+            new Circle(9.5, 4.0, 1.5, 2.0, 0.0, 0.0),     // 3 m/s，朝向不变
+            new Circle(9.0, 4.0, 2.0, -1.5, 1.0, 0.0),    // 反方向
+            new Circle(9.5, 3.0, 1.5, 2.0, 0.0, 3.0),     // 边跑边自转
+            new Circle(8.5, 5.0, 2.5, 1.2, -2.0, -4.0),
+        };
+        for (Circle circle : circles) {
+            double[] error = trackingError(circle);
+            assertTrue(error[0] > 5.0, "raw lag " + error[0] + " deg is too small to test");
+            assertTrue(error[1] < 0.1 * error[0],
+                "compensated " + error[1] + " deg vs raw " + error[0] + " deg");
+        }
+    }
+
+    @Test
+    void aimRateMatchesAngleDerivative() {
+        Circle circle = new Circle(9.5, 4.0, 1.5, 2.0, 0.0, 1.0);
+        AimPredictor predictor = new AimPredictor(kDelay);
+        predictor.setTurretOffset(TurrentConst.turrentOffset.getX(), TurrentConst.turrentOffset.getY());
+        double h = 1e-4;
+        for (double now = 0.0; now < 2 * Math.PI / Math.abs(circle.rate); now += 0.05) {
+            circle.t = now - kPoseAge;
+            predictor.predict(circle.x(circle.t), circle.y(circle.t), circle.heading(circle.t), circle, now);
+            double rate = Math.toDegrees(predictor.computeAimRate(kTarget.getX(), kTarget.getY()));
+            double tp = now + kDelay;
+            double numeric = MathUtil.inputModulus(TurrentSubsystem.calcTurrentAngle(circle.pose(tp + h), kTarget)
+                - TurrentSubsystem.calcTurrentAngle(circle.pose(tp - h), kTarget), -180, 180) / (2 * h);
+            assertTrue(Math.abs(rate - numeric) < 0.05 * Math.abs(numeric) + 2.0,
+                "t " + now + ": aim rate " + rate + " vs " + numeric + " deg/s");
+        }
+    }
+}
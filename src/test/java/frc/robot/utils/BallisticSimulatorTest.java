@@ -0,0 +1,47 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.utils.BallisticSimulator.Crossing;
+
+class BallisticSimulatorTest {
+    private static Crossing shoot(double rps, double angleDeg, double spin) {
+        Crossing c = BallisticSimulator.simulate(rps, angleDeg, 0.0, spin, new Crossing());
+        assertTrue(c.valid, "rps " + rps + " angle " + angleDeg + " spin " + spin);
+        return c;
+    }
+
+    @Test
+    void backspinCarriesFartherThanNoSpin() {
+        // 45 度时升力基本朝上，后旋一定飞得更远，上旋更近
+        for (double rps = 65; rps <= 85; rps += 10) {
+            double spin = BallisticSimulator.backspin(rps);
+            Crossing back = shoot(rps, 45, spin);
+            Crossing none = shoot(rps, 45, 0.0);
+            Crossing top = shoot(rps, 45, -spin);
+            assertTrue(back.x > none.x, "rps " + rps + ": backspin " + back.x + " <= no spin " + none.x);
+            assertTrue(top.x < none.x, "rps " + rps + ": topspin " + top.x + " >= no spin " + none.x);
+        }
+    }
+
+    @Test
+    void backspinHangsLongerAtLaunchAngle() {
+        // 高抛时上升段升力偏向后方，落点不一定更远，但一定飞得更久
+        for (double rps = 50; rps <= 75; rps += 5) {
+            Crossing back = shoot(rps, 68, BallisticSimulator.backspin(rps));
+            Crossing none = shoot(rps, 68, 0.0);
+            assertTrue(back.time > none.time, "rps " + rps + ": backspin " + back.time + " <= no spin " + none.time);
+        }
+    }
+
+    @Test
+    void spinDoesNotPushSideways() {
+        double yaw = Math.toRadians(30);
+        Crossing c = BallisticSimulator.simulate(60, 68, yaw, new Crossing());
+        assertTrue(c.valid);
+        assertEquals(Math.tan(yaw), c.y / c.x, 1e-9);
+    }
+}
@@ -0,0 +1,83 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
+
+/**
+ * 部署目录里的 shotgrid.bin 和 ShotSolver 对比：表必须和当前的 kShotTimeTable / kRPMTable 一致（否则要重新 generateShotGrid），
+ * 随机状态下查表命中时飞行时间、转速、虚拟目标的误差都不超过 ShotGrid 的上限
+ */
+class ShotGridTest {
+    private static final int SAMPLES = 200000;
+    private static final Path GRID_PATH = Path.of("src/main/deploy", ShotGrid.FILE_NAME);
+
+    private static ShotGrid load() {
+        ShotGrid grid = ShotGrid.load(GRID_PATH, ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable);
+        assertNotNull(grid, "shotgrid.bin 不存在或者过期，运行 gradlew generateShotGrid");
+        return grid;
+    }
+
+    @Test
+    void hitsMatchSolverWithinBounds() {
+        ShotGrid grid = load();
+        ShotSolver solver = new ShotSolver(ShooterConstants.kShotTimeTable);
+        solver.setTurretOffset(0.0, 0.0);
+        solver.setAccelLeadTime(0.0);
+        Random random = new Random(1706);
+        int hits = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            // 炮台相对目标的位置和出膛速度，覆盖整个网格
+            double dx = -8.0 + random.nextDouble() * 16.0;
+            double dy = -4.5 + random.nextDouble() * 9.0;
+            double vx = -4.0 + random.nextDouble() * 8.0;
+            double vy = -4.0 + random.nextDouble() * 8.0;
+            if (!grid.lookup(dx, dy, vx, vy)) {
+                continue;
+            }
+            hits++;
+            solver.solve(dx, dy, 0.0, vx, vy, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+            double tof = grid.getTimeOfFlight();
+            String state = String.format("dx=%.3f dy=%.3f vx=%.3f vy=%.3f", dx, dy, vx, vy);
+            assertTrue(Math.abs(tof - solver.getTimeOfFlight()) <= ShotGrid.MAX_TOF_ERROR, state + " tof " + tof);
+            assertTrue(Math.abs(grid.getRps() - ShooterConstants.kRPMTable.getOutput(solver.getDistance())) <= ShotGrid.MAX_RPS_ERROR,
+                state + " rps " + grid.getRps());
+            // 目标在原点，虚拟目标 = -v*T
+            double miss = Math.hypot(solver.getVirtualTargetX() + vx * tof, solver.getVirtualTargetY() + vy * tof);
+            assertTrue(miss <= ShotGrid.MAX_MISS_ERROR, state + " miss " + miss);
+            double angle = Math.atan2(solver.getVirtualTargetY() - dy, solver.getVirtualTargetX() - dx);
+            // 角度误差换算成虚拟目标处的横向偏差，不会超过 miss
+            double lateral = Math.abs(Math.IEEEremainder(grid.getFieldAngle() - angle, 2 * Math.PI)) * solver.getDistance();
+            assertTrue(lateral <= ShotGrid.MAX_MISS_ERROR, state + " angle " + grid.getFieldAngle());
+        }
+        // 无效的格子交给 ShotSolver，但大部分状态应该能查表
+        assertTrue(hits > SAMPLES / 2, "hit rate " + (double) hits / SAMPLES);
+    }
+
+    @Test
+    void outsideGridFallsBack() {
+        ShotGrid grid = load();
+        assertFalse(grid.lookup(-8.5, 0.0, 0.0, 0.0));
+        assertFalse(grid.lookup(0.0, 5.0, 0.0, 0.0));
+        assertFalse(grid.lookup(-3.0, 0.0, 4.5, 0.0));
+        assertFalse(grid.lookup(-3.0, 0.0, 0.0, -4.5));
+    }
+
+    @Test
+    void rejectsGridBuiltFromOtherTables() {
+        MonotoneCubicInterpolationTable other = new MonotoneCubicInterpolationTable(
+            new Point2D.Double(0.0, 1.0), new Point2D.Double(5.0, 1.5));
+        assertNull(ShotGrid.load(GRID_PATH, other, ShooterConstants.kRPMTable));
+        assertNull(ShotGrid.load(Path.of("src/main/deploy", "missing.bin"), ShooterConstants.kShotTimeTable, ShooterConstants.kRPMTable));
+    }
+}
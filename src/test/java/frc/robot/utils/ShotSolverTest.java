@@ -0,0 +1,105 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Library.team1706.MonotoneCubicInterpolationTable;
+
+/**
+ * 随机状态下和暴力解对比：在 [最短, 最长飞行时间] 上密集扫 f(T) = T - tof(|D - vT|) 的变号点再二分，
+ * 牛顿法的解必须落在其中一个根上，虚拟目标和炮台位置、速度要和独立算出来的一致
+ */
+class ShotSolverTest {
+    private static final int SAMPLES = 20000;
+    private static final double OFFSET_X = 0.127;
+    private static final double OFFSET_Y = 0.174;
+    private static final double LEAD_TIME = 0.010;
+
+    private static final MonotoneCubicInterpolationTable kTable = ShooterConstants.kShotTimeTable;
+
+    private static double f(double t, double dx, double dy, double vx, double vy) {
+        return t - kTable.getOutput(Math.hypot(dx - vx * t, dy - vy * t));
+    }
+
+    /** @return 离 t 最近的根和 t 的距离 */
+    private static double distanceToRoot(double t, double dx, double dy, double vx, double vy) {
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        for (double y : kTable.getY()) {
+            lo = Math.min(lo, y);
+            hi = Math.max(hi, y);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        double step = 1e-3;
+        double a = lo;
+        double fa = f(a, dx, dy, vx, vy);
+        while (a < hi) {
+            double b = Math.min(hi, a + step);
+            double fb = f(b, dx, dy, vx, vy);
+            if (fa == 0.0) {
+                best = Math.min(best, Math.abs(t - a));
+            } else if (fa * fb < 0.0 || fb == 0.0) {
+                double l = a, r = b, fl = fa;
+                for (int i = 0; i < 60; i++) {
+                    double m = 0.5 * (l + r);
+                    double fm = f(m, dx, dy, vx, vy);
+                    if (fl * fm <= 0.0) {
+                        r = m;
+                    } else {
+                        l = m;
+                        fl = fm;
+                    }
+                }
+                best = Math.min(best, Math.abs(t - 0.5 * (l + r)));
+            }
+            a = b;
+            fa = fb;
+        }
+        return best;
+    }
+
+    @Test
+    void matchesBruteForceRoot() {
+        ShotSolver solver = new ShotSolver(kTable);
+        solver.setTurretOffset(OFFSET_X, OFFSET_Y);
+        solver.setAccelLeadTime(LEAD_TIME);
+        Random random = new Random(5515);
+        double targetX = 11.969, targetY = 4.021;
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = targetX - 8.0 + random.nextDouble() * 8.0;
+            double y = targetY - 4.0 + random.nextDouble() * 8.0;
+            double heading = (random.nextDouble() * 2 - 1) * Math.PI;
+            double vx = (random.nextDouble() * 2 - 1) * 4.0;
+            double vy = (random.nextDouble() * 2 - 1) * 4.0;
+            double omega = (random.nextDouble() * 2 - 1) * 6.0;
+            double ax = random.nextGaussian() * 3.0;
+            double ay = random.nextGaussian() * 3.0;
+            double alpha = random.nextGaussian() * 10.0;
+
+            assertTrue(solver.solve(x, y, heading, vx, vy, omega, ax, ay, alpha, targetX, targetY), "sample " + i);
+
+            // 炮台位置和出膛速度
+            double rx = OFFSET_X * Math.cos(heading) - OFFSET_Y * Math.sin(heading);
+            double ry = OFFSET_X * Math.sin(heading) + OFFSET_Y * Math.cos(heading);
+            double tvx = vx - omega * ry + (ax - alpha * ry - omega * omega * rx) * LEAD_TIME;
+            double tvy = vy + omega * rx + (ay + alpha * rx - omega * omega * ry) * LEAD_TIME;
+            assertEquals(x + rx, solver.getTurretX(), 1e-12);
+            assertEquals(y + ry, solver.getTurretY(), 1e-12);
+            assertEquals(tvx, solver.getTurretVx(), 1e-12);
+            assertEquals(tvy, solver.getTurretVy(), 1e-12);
+
+            double t = solver.getTimeOfFlight();
+            double dx = targetX - (x + rx);
+            double dy = targetY - (y + ry);
+            assertTrue(distanceToRoot(t, dx, dy, tvx, tvy) < 1e-5, "sample " + i + ": tof " + t + " is not a root");
+            assertEquals(targetX - tvx * t, solver.getVirtualTargetX(), 1e-9);
+            assertEquals(targetY - tvy * t, solver.getVirtualTargetY(), 1e-9);
+            assertEquals(kTable.getOutput(solver.getDistance()), t, 1e-5);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.ctre.phoenix6.hardware.TalonFX;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.commands.DataLogger;
+
+/**
+ * 仿真里的 SignalCapture / DataLogger：开始之前读取返回空数据，采集时每个信号每行一个点，文件能读回来
+ */
+class SignalCaptureTest {
+    @BeforeAll
+    static void initHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @Test
+    void emptyBeforeStart() {
+        DataLogger logger = new DataLogger();
+        assertFalse(logger.isRecording());
+        assertEquals(0, logger.getSampleCount());
+        assertEquals(0, logger.getSnapshot(0).size());
+        double[][] data = logger.stopRecording();
+        assertEquals(DataLogger.getDeviceIds().length, data.length);
+        for (double[] motor : data) {
+            assertEquals(0, motor.length);
+        }
+    }
+
+    @Test
+    void capturesInSimulation() throws Exception {
+        TalonFX motor = new TalonFX(41);
+        SignalCapture capture = new SignalCapture("test").addMotor("motor", motor);
+        assertEquals(4, capture.getSignalCount());
+        assertEquals(0, capture.getSnapshot(3).size());
+
+        capture.start(100.0);
+        Thread.sleep(500);
+        capture.stop();
+
+        int rows = capture.getRowCount();
+        assertTrue(rows > 10, "rows " + rows);
+        for (int i = 0; i < capture.getSignalCount(); i++) {
+            assertEquals(rows, capture.getSnapshot(i).size(), capture.getLabel(i));
+        }
+        SampleBuffer.Snapshot rowSnapshot = capture.getRowSnapshot();
+        for (int r = 1; r < rows; r++) {
+            assertTrue(rowSnapshot.timestamp(r) > rowSnapshot.timestamp(r - 1), "row " + r);
+        }
+
+        Path file = Files.createTempFile("capture", ".cap");
+        assertTrue(capture.writeColumnar(file.toString()));
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile()))) {
+            assertEquals(0x53434150, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(4, in.readInt());
+            assertEquals(rows, in.readInt());
+        }
+        // 头 16 字节 + 列名 + (2 + 4 * 2) 列 double
+        long labelBytes = 0;
+        for (int i = 0; i < capture.getSignalCount(); i++) {
+            labelBytes += 2 + capture.getLabel(i).getBytes("UTF-8").length;
+        }
+        assertEquals(16 + labelBytes + 10L * rows * 8, Files.size(file));
+        motor.close();
+    }
+}
@@ -0,0 +1,91 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 记录线程一边写满、换块，一边频繁 flush，后台线程同时在写文件：
+ * .rec 里每个 key 的记录按文件顺序读出来，时间戳不能倒退，也不能重复或者丢失
+ */
+class StreamingRecorderTest {
+    private static final int KEYS = 8;
+    private static final int ROUNDS = 20000;
+
+    /** @return 每个 key 读到的记录数；时间戳倒退时直接失败 */
+    private static long[] readRecords(Path path) throws IOException {
+        ByteBuffer rec = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        long[] counts = new long[KEYS];
+        double[] last = new double[KEYS];
+        Arrays.fill(last, Double.NEGATIVE_INFINITY);
+        int pos = 0;
+        while (pos + 8 <= rec.limit()) {
+            int id = rec.getInt(pos);
+            int count = rec.getInt(pos + 4);
+            int start = pos + 8;
+            if (start + count * StreamingRecorder.RECORD_SIZE > rec.limit()) {
+                break; // 后台线程还在写这一段
+            }
+            for (int i = 0; i < count; i++) {
+                int offset = start + i * StreamingRecorder.RECORD_SIZE;
+                double timestamp = rec.getDouble(offset);
+                assertTrue(timestamp > last[id], "key " + id + ": " + timestamp + " after " + last[id]);
+                // 值就是时间戳，确认段头的 key 和内容对得上
+                assertEquals(timestamp, Double.longBitsToDouble(rec.getLong(offset + 8)), 0.0, "key " + id);
+                last[id] = timestamp;
+                counts[id]++;
+            }
+            pos = start + count * StreamingRecorder.RECORD_SIZE;
+        }
+        return counts;
+    }
+
+    @Test
+    void keySegmentsStayInOrderWhileFlushing() throws Exception {
+        Path dir = Files.createTempDirectory("recorder");
+        StreamingRecorder recorder = new StreamingRecorder(dir.resolve("test").toString());
+        recorder.start();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int key = 0; key < KEYS; key++) {
+                // 每个 key 的时间戳各不相同且递增，值和时间戳一样
+                double timestamp = round + key * 1e-3;
+                recorder.recordNumber("key" + key, timestamp, timestamp, true);
+            }
+            // flush 的间隔和块大小互质，部分段和写满的块交替出现
+            if (round % 37 == 0) {
+                recorder.flush();
+            }
+            if (round % 500 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        recorder.flush();
+
+        Path rec = Path.of(recorder.getRecordPath());
+        long expected = (long) KEYS * ROUNDS - recorder.getDroppedRecords();
+        long total = 0;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            total = 0;
+            if (Files.exists(rec)) {
+                for (long count : readRecords(rec)) {
+                    total += count;
+                }
+            }
+            if (total >= expected) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        assertEquals(expected, total, "records on disk");
+    }
+}
@@ -0,0 +1,94 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 目标在 ±180 接缝附近来回摆动（180 ± 30 度，2 rad/s），炮台跟随 6 秒：
+ * 换圈时转过的角度超过 90 度就记一次"绕圈死时间"（按梯形曲线的转动时间），和 normalizeAngle 的第一个合法解比较
+ */
+class TurretWrapPlannerTest {
+    // TurrentConst.kAimingCruiseVelocity / kMotionMagicAcceleration（电机圈）换算成炮台角度
+    private static final double DEGREES_PER_ROTATION = 14.48275862069;
+    private static final double CRUISE_VELOCITY = 120.0 * DEGREES_PER_ROTATION;
+    private static final double ACCELERATION = 140.0 * DEGREES_PER_ROTATION;
+    private static final double DT = 0.02;
+
+    /** @return [规划器的死时间, normalizeAngle 的死时间]（秒） */
+    private static double[] seamDeadTime(double limit) {
+        TurretWrapPlanner planner = new TurretWrapPlanner(-limit, limit, CRUISE_VELOCITY, ACCELERATION);
+        double current = 180.0;
+        double currentNaive = 180.0;
+        double planned = 0.0;
+        double naive = 0.0;
+        for (int i = 0; i < 300; i++) {
+            double t = i * DT;
+            double target = Math.IEEEremainder(180.0 + 30.0 * Math.sin(2.0 * t), 360.0);
+            double rate = 60.0 * Math.cos(2.0 * t);
+
+            double out = planner.plan(target, current, rate);
+            assertTrue(out >= -limit && out <= limit, "out of limits: " + out);
+            if (Math.abs(out - current) > 90.0) {
+                planned += planner.moveTime(Math.abs(out - current));
+            }
+            current = out;
+
+            // normalizeAngle：限位里的第一个解
+            double first = target + 360.0 * Math.ceil((-limit - target) / 360.0);
+            if (Math.abs(first - currentNaive) > 90.0) {
+                naive += planner.moveTime(Math.abs(first - currentNaive));
+            }
+            currentNaive = first;
+        }
+        return new double[] { planned, naive };
+    }
+
+    @Test
+    void singleWindingAtCurrentLimits() {
+        // ±180 只有一种转法，规划器和 normalizeAngle 一样
+        double[] dead = seamDeadTime(180.0);
+        assertEquals(dead[1], dead[0], 1e-9);
+    }
+
+    @Test
+    void widerLimitsCutUnwindTime() {
+        // ±200：原来 4.21 秒，规划后 3.37 秒
+        double[] dead = seamDeadTime(200.0);
+        assertEquals(4.21, dead[1], 0.01);
+        assertEquals(3.37, dead[0], 0.01);
+
+        // ±270：接缝两边都在限位里，提前选好圈之后不用再绕
+        dead = seamDeadTime(270.0);
+        assertEquals(0.84, dead[1], 0.01);
+        assertEquals(0.0, dead[0], 1e-9);
+    }
+
+    @Test
+    void preUnwindsBeforeLimit() {
+        TurretWrapPlanner planner = new TurretWrapPlanner(-270.0, 270.0, CRUISE_VELOCITY, ACCELERATION);
+        // 炮台在 250 度，目标 -100 度（= 260 度）正在以 120 度/秒增加：半秒后 260 这一圈会撞上限位，提前换到 -100
+        double out = planner.plan(-100.0, 250.0, 120.0);
+        assertEquals(-100.0, out, 1e-9);
+        assertTrue(planner.isPreUnwinding());
+
+        // 目标不动时留在最近的一圈
+        planner.reset();
+        assertEquals(260.0, planner.plan(-100.0, 250.0, 0.0), 1e-9);
+        assertFalse(planner.isPreUnwinding());
+    }
+
+    @Test
+    void deadZoneParksOnTheSideTargetIsHeadingTo() {
+        // 限位不到 360 度，170 度在死区里
+        TurretWrapPlanner planner = new TurretWrapPlanner(-150.0, 150.0, CRUISE_VELOCITY, ACCELERATION);
+        // 正在往 +180 走，越过接缝后离 -150 更近
+        assertEquals(-150.0, planner.plan(170.0, 0.0, 60.0), 1e-9);
+        assertFalse(planner.isPreUnwinding());
+        // 正在往回走，马上回到 150 里面
+        assertEquals(150.0, planner.plan(170.0, 0.0, -60.0), 1e-9);
+        assertFalse(planner.isPreUnwinding());
+    }
+}
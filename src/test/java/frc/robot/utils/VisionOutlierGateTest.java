@@ -0,0 +1,124 @@
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * 估计位姿的历史是一条已知的轨迹（沿 x 1 m/s），视觉帧在拍照时刻的位姿上加偏移：
+ * 门限两边接受 / 拒绝，连续被拒到上限后放行一帧，每个相机单独计数
+ */
+class VisionOutlierGateTest {
+    private static final double XY_STD_DEV = 0.1;
+    // 马氏距离平方正好等于门限时的偏移（米）
+    private static final double GATE_DISTANCE = Math.sqrt(VisionConstants.kChiSquaredGate
+            * (XY_STD_DEV * XY_STD_DEV + VisionConstants.kOdometryStdDev * VisionConstants.kOdometryStdDev));
+
+    private static VisionOutlierGate newGate() {
+        return new VisionOutlierGate(3, VisionConstants.kOdometryStdDev, VisionConstants.kChiSquaredGate,
+                VisionConstants.kMaxConsecutiveRejects);
+    }
+
+    private static TimeInterpolatableBuffer<Pose2d> history() {
+        TimeInterpolatableBuffer<Pose2d> history = TimeInterpolatableBuffer.createBuffer(1.5);
+        for (int i = 0; i <= 50; i++) {
+            double t = i * 0.02;
+            history.addSample(t, new Pose2d(1.0 + t, 2.0, Rotation2d.kZero));
+        }
+        return history;
+    }
+
+    /** 拍照时刻 captureTime 的视觉帧，比历史位姿偏了 (offsetX, offsetY) */
+    private static boolean feed(VisionOutlierGate gate, TimeInterpolatableBuffer<Pose2d> history, int camera,
+                                double captureTime, double offsetX, double offsetY) {
+        Pose2d odom = history.getSample(captureTime).orElseThrow();
+        return gate.test(camera, odom.getX() + offsetX, odom.getY() + offsetY, odom.getX(), odom.getY(), XY_STD_DEV);
+    }
+
+    @Test
+    void acceptsInsideChiSquaredGate() {
+        VisionOutlierGate gate = newGate();
+        TimeInterpolatableBuffer<Pose2d> history = history();
+
+        // 在两个样本之间拍照，按插值后的位姿比
+        assertTrue(feed(gate, history, 0, 0.33, GATE_DISTANCE * 0.99, 0.0));
+        assertEquals(VisionConstants.kChiSquaredGate * 0.99 * 0.99, gate.getLastMahalanobis(0), 1e-9);
+        assertFalse(feed(gate, history, 0, 0.51, GATE_DISTANCE * 1.01, 0.0));
+        assertEquals(VisionConstants.kChiSquaredGate * 1.01 * 1.01, gate.getLastMahalanobis(0), 1e-9);
+        // 斜着偏，x、y 一起算
+        double diagonal = GATE_DISTANCE / Math.sqrt(2.0);
+        assertTrue(feed(gate, history, 0, 0.7, diagonal * 0.99, -diagonal * 0.99));
+        assertFalse(feed(gate, history, 0, 0.7, -diagonal * 1.01, diagonal * 1.01));
+
+        assertEquals(2, gate.getAcceptedCount(0));
+        assertEquals(2, gate.getRejectedCount(0));
+    }
+
+    @Test
+    void comparesAgainstPoseAtCaptureTime() {
+        VisionOutlierGate gate = newGate();
+        TimeInterpolatableBuffer<Pose2d> history = history();
+        // 视觉位姿是 0.2 秒时的真实位置；和 0.8 秒的位姿比会差 0.6 米被拒，和拍照时刻比则完全一致
+        Pose2d seen = history.getSample(0.2).orElseThrow();
+        Pose2d latest = history.getSample(0.8).orElseThrow();
+        assertFalse(gate.test(0, seen.getX(), seen.getY(), latest.getX(), latest.getY(), XY_STD_DEV));
+        assertTrue(feed(gate, history, 0, 0.2, 0.0, 0.0));
+        assertEquals(0.0, gate.getLastMahalanobis(0), 1e-12);
+    }
+
+    @Test
+    void letsFrameThroughAfterConsecutiveRejects() {
+        VisionOutlierGate gate = newGate();
+        TimeInterpolatableBuffer<Pose2d> history = history();
+        // 里程计歪了 1 米：前 kMaxConsecutiveRejects 帧都拒，下一帧放进去
+        for (int i = 0; i < VisionConstants.kMaxConsecutiveRejects; i++) {
+            assertFalse(feed(gate, history, 1, 0.5, 1.0, 0.0), "frame " + i);
+        }
+        assertTrue(feed(gate, history, 1, 0.5, 1.0, 0.0));
+        // 放行后重新计数
+        assertFalse(feed(gate, history, 1, 0.5, 1.0, 0.0));
+
+        // 中间接受一帧也会重新计数
+        for (int i = 1; i < VisionConstants.kMaxConsecutiveRejects; i++) {
+            assertFalse(feed(gate, history, 1, 0.5, 1.0, 0.0));
+        }
+        assertTrue(feed(gate, history, 1, 0.5, 0.0, 0.0));
+        for (int i = 0; i < VisionConstants.kMaxConsecutiveRejects; i++) {
+            assertFalse(feed(gate, history, 1, 0.5, 1.0, 0.0), "frame " + i);
+        }
+
+        assertEquals(2, gate.getAcceptedCount(1));
+        assertEquals(3 * VisionConstants.kMaxConsecutiveRejects, gate.getRejectedCount(1));
+    }
+
+    @Test
+    void countsPerCamera() {
+        VisionOutlierGate gate = newGate();
+        TimeInterpolatableBuffer<Pose2d> history = history();
+        for (int i = 0; i < VisionConstants.kMaxConsecutiveRejects; i++) {
+            assertFalse(feed(gate, history, 2, 0.4, 0.0, 1.0));
+        }
+        // 相机 2 连续被拒不影响相机 0 的计数，相机 0 的离群帧照样拒
+        assertFalse(feed(gate, history, 0, 0.4, 0.0, 1.0));
+        assertTrue(gate.accept(0));
+
+        assertEquals(1, gate.getAcceptedCount(0));
+        assertEquals(1, gate.getRejectedCount(0));
+        assertEquals(0, gate.getAcceptedCount(1));
+        assertEquals(0, gate.getRejectedCount(1));
+        assertEquals(0, gate.getAcceptedCount(2));
+        assertEquals(VisionConstants.kMaxConsecutiveRejects, gate.getRejectedCount(2));
+        assertEquals(1.0 / (XY_STD_DEV * XY_STD_DEV + VisionConstants.kOdometryStdDev * VisionConstants.kOdometryStdDev),
+                gate.getLastMahalanobis(2), 1e-9);
+        // 没有历史可比时直接接受
+        assertTrue(gate.accept(2));
+        assertEquals(1, gate.getAcceptedCount(2));
+    }
+}